@@ -0,0 +1,99 @@
+package Harness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import Parser.ArgumentParser;
+import Parser.SimulationParameters;
+import StochasticSimulation.BatchEvaluator;
+import StochasticSimulation.Individual;
+
+/**
+ * This class represents a microbenchmark of the evaluation of individuals.
+ *
+ * The EvaluatorBenchmark class builds a block of random individuals on each instance of a directory
+ * and measures, after a warm-up, the time per individual of the one-by-one computeMetrics, of the
+ * scalar BatchEvaluator and, when the source root vector/ is compiled and the JVM is started with
+ * --add-modules jdk.incubator.vector, of the VectorBatchEvaluator. The median of the measured
+ * iterations is reported. The figures measured on SIM are kept in Harness/evaluator_benchmark.txt.
+ *
+ * Usage: java [--add-modules jdk.incubator.vector] Harness.EvaluatorBenchmark [dir] [block size]
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class EvaluatorBenchmark {
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    /**
+     * This method is the entry point of the benchmark.
+     *
+     * @param args the directory of the instances (SIM by default) and the block size (1024 by default)
+     */
+    public static void main(String[] args) {
+        String directory = args.length > 0 ? args[0] : "SIM";
+        int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        List<String> instances = ArgumentParser.findInstanceFiles(directory);
+        if (instances == null) {
+            return;
+        }
+
+        boolean vector = BatchEvaluator.isVectorApiPresent();
+        System.out.println("Block of " + blockSize + " individuals, Vector API " + (vector ? "present" : "absent"));
+        System.out.println("java " + System.getProperty("java.version") + ", "
+                + Runtime.getRuntime().availableProcessors() + " processor(s)");
+        System.out.println(String.format("%-40s %16s %16s %16s", "instance", "one-by-one ns", "scalar batch ns", "vector batch ns"));
+
+        for (String instance : instances) {
+            SimulationParameters params = ArgumentParser.parseArguments(new String[] { "-f", instance });
+            if (params == null) {
+                continue;
+            }
+            int[][] matrix = params.getMatrix();
+            Random random = new Random(42);
+            Individual first = new Individual(matrix, random);
+            List<Individual> block = new ArrayList<>(first.createRandomBatch(random, blockSize));
+
+            double oneByOne = measure(() -> {
+                for (Individual individual : block) {
+                    individual.computeMetrics();
+                }
+            }) / blockSize;
+
+            BatchEvaluator scalar = BatchEvaluator.createScalar(matrix);
+            double scalarBatch = measure(() -> scalar.evaluate(block)) / blockSize;
+
+            String vectorBatch = "-";
+            BatchEvaluator vectorized = vector ? BatchEvaluator.forMatrix(matrix) : null;
+            // sem a raiz vector/ compilada, forMatrix devolve o avaliador escalar
+            if (vectorized != null && vectorized.getClass() != BatchEvaluator.class) {
+                vectorBatch = String.format("%.1f", measure(() -> vectorized.evaluate(block)) / blockSize);
+            }
+
+            System.out.println(String.format("%-40s %16.1f %16.1f %16s", instance, oneByOne, scalarBatch, vectorBatch));
+        }
+    }
+
+    /**
+     * This method runs a task repeatedly and returns the median time of the measured iterations.
+     *
+     * @param task the task to measure
+     * @return the median time of one run of the task, in nanoseconds
+     */
+    private static double measure(Runnable task) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            task.run();
+        }
+        long[] samples = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_ITERATIONS / 2];
+    }
+}
@@ -0,0 +1,355 @@
+package Harness;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+
+import Parser.ArgumentParser;
+import Parser.SimulationParameters;
+import StochasticSimulation.Individual;
+import StochasticSimulation.Simulation;
+
+/**
+ * This class represents an end-to-end performance regression suite over a directory of instances.
+ *
+ * The RegressionSuite class runs every instance of a directory (SIM by default) with a fixed set
+ * of seeds, each one several times, keeping the fastest repetition of every seed. For each instance
+ * it records the wall time, the events per second, the peak heap, the allocation per event, the simulated
+ * time at which the best ever individual was found and its comfort. The metrics are compared with a
+ * baselines file. Runs print no observations, and the suite needs nothing but the JDK.
+ *
+ * Only the quality metrics, the time to the best and its comfort, are deterministic for a fixed seed;
+ * one that got worse by more than the quality tolerance is reported as a regression and the suite
+ * exits with status 1. The timing and allocation metrics depend on the host and the JVM, so by default
+ * one that got worse by more than the tolerance is only reported as advisory. With --gate-performance
+ * they are gated as well, which only makes sense against baselines recorded on the same host with
+ * --update. Wall times under a millisecond, and the events per second derived from them, are too
+ * short to be compared and are never gated.
+ *
+ * Usage: java Harness.RegressionSuite [--dir SIM] [--baselines Harness/baselines.txt] [--seeds 3]
+ * [--repeat 10] [--tolerance 0.3] [--quality-tolerance 0.01] [--gate-performance] [--update]
+ *
+ * With --update, or when the baselines file does not exist yet, the measured metrics are written
+ * as the new baselines instead of being compared.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class RegressionSuite {
+    /**
+     * The metrics recorded for every instance, in the order they are reported.
+     */
+    private static final String[] METRICS = { "wall_ms", "events_per_second", "peak_heap_mb", "alloc_kb_per_event", "time_to_best", "best_comfort" };
+    /**
+     * Whether a larger value of each metric is better.
+     */
+    private static final boolean[] HIGHER_IS_BETTER = { false, true, false, false, false, true };
+    /**
+     * Whether each metric measures solution quality, which is deterministic for a fixed seed, rather than performance.
+     */
+    private static final boolean[] QUALITY = { false, false, false, false, true, true };
+    /**
+     * Whether each metric is derived from the wall time, and so cannot be compared for runs that are too short.
+     */
+    private static final boolean[] TIMED = { true, true, false, false, false, false };
+    /**
+     * The shortest wall time, in milliseconds, for the timed metrics to be compared.
+     */
+    private static final double MIN_WALL_MS = 1.0;
+
+    /**
+     * This method is the entry point of the suite.
+     *
+     * @param args the command-line arguments passed to the suite
+     */
+    public static void main(String[] args) {
+        String directory = "SIM";
+        String baselinesPath = "Harness/baselines.txt";
+        int seeds = 3;
+        int repeat = 10;
+        double tolerance = 0.3;
+        double qualityTolerance = 0.01;
+        boolean update = false;
+        boolean gatePerformance = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dir":
+                        directory = args[++i];
+                        break;
+                    case "--baselines":
+                        baselinesPath = args[++i];
+                        break;
+                    case "--seeds":
+                        seeds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--repeat":
+                        repeat = Integer.parseInt(args[++i]);
+                        break;
+                    case "--tolerance":
+                        tolerance = Double.parseDouble(args[++i]);
+                        break;
+                    case "--quality-tolerance":
+                        qualityTolerance = Double.parseDouble(args[++i]);
+                        break;
+                    case "--update":
+                        update = true;
+                        break;
+                    case "--gate-performance":
+                        gatePerformance = true;
+                        break;
+                    default:
+                        System.out.println("Unknown option " + args[i] + ".");
+                        System.exit(2);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("Invalid option value: " + e.getMessage());
+            System.exit(2);
+        }
+
+        List<String> instances = ArgumentParser.findInstanceFiles(directory);
+        if (instances == null || instances.isEmpty()) {
+            System.out.println("No input files found in " + directory + ".");
+            System.exit(2);
+        }
+
+        // Every instance is warmed up before any is measured, so that later instances do not recompile shared code
+        for (String instance : instances) {
+            for (int i = 0; i < repeat; i++) {
+                if (runOnce(instance, 1) == null) {
+                    System.out.println("Failed to parse " + instance + ".");
+                    System.exit(2);
+                }
+            }
+        }
+
+        Map<String, Double> measured = new TreeMap<>();
+        for (String instance : instances) {
+            double[] metrics = measureInstance(instance, seeds, repeat);
+            for (int i = 0; i < METRICS.length; i++) {
+                measured.put(instance + "." + METRICS[i], metrics[i]);
+            }
+        }
+
+        Properties baselines = new Properties();
+        boolean haveBaselines = false;
+        if (!update) {
+            try (FileReader reader = new FileReader(baselinesPath)) {
+                baselines.load(reader);
+                haveBaselines = true;
+            } catch (IOException e) {
+                System.out.println("No baselines in " + baselinesPath + "; recording the measured metrics.");
+            }
+        }
+
+        if (!haveBaselines) {
+            writeBaselines(baselinesPath, measured, seeds, repeat);
+            printReport(instances, measured, null, tolerance, qualityTolerance, gatePerformance);
+            return;
+        }
+
+        int regressions = printReport(instances, measured, baselines, tolerance, qualityTolerance, gatePerformance);
+        if (regressions > 0) {
+            System.out.println(regressions + " metric(s) regressed.");
+            System.exit(1);
+        }
+        System.out.println("No regressions.");
+    }
+
+    /**
+     * This method runs an instance with every seed and aggregates the metrics of the fastest
+     * repetition of each seed. The allocation is reported per event rather than per second, so
+     * that a faster run is not mistaken for one that allocates more.
+     *
+     * @param instance the path of the input file
+     * @param seeds the number of seeds, 1 to seeds
+     * @param repeat the number of repetitions of every seed
+     * @return the metrics, in the order of METRICS
+     */
+    private static double[] measureInstance(String instance, int seeds, int repeat) {
+        double wallNanos = 0;
+        double events = 0;
+        double peakHeap = 0;
+        double allocatedBytes = 0;
+        double timeToBest = 0;
+        double bestComfort = 0;
+        for (int seed = 1; seed <= seeds; seed++) {
+            double[] fastest = null;
+            for (int i = 0; i < repeat; i++) {
+                double[] run = runOnce(instance, seed);
+                if (fastest == null || run[0] < fastest[0]) {
+                    fastest = run;
+                }
+            }
+            wallNanos += fastest[0];
+            events += fastest[1];
+            peakHeap = Math.max(peakHeap, fastest[2]);
+            allocatedBytes += fastest[3];
+            timeToBest += fastest[4];
+            bestComfort += fastest[5];
+        }
+
+        double seconds = Math.max(wallNanos / 1e9, 1e-9);
+        return new double[] { wallNanos / 1e6 / seeds, events / seconds, peakHeap / (1024 * 1024),
+                allocatedBytes / 1024 / Math.max(events, 1), timeToBest / seeds, bestComfort / seeds };
+    }
+
+    /**
+     * This method parses and runs an instance once, without observers.
+     *
+     * @param instance the path of the input file
+     * @param seed the seed of the run
+     * @return the wall time in nanoseconds, the number of events, the peak heap and the allocated
+     * bytes, the time to the best ever individual and its comfort, or null if the instance cannot be parsed
+     */
+    private static double[] runOnce(String instance, long seed) {
+        SimulationParameters params = ArgumentParser.parseArguments(new String[] { "-f", instance, "--seed", String.valueOf(seed) });
+        if (params == null) {
+            return null;
+        }
+
+        System.gc();
+        resetPeakHeap();
+        long allocatedBefore = allocatedBytes();
+        long startTime = System.nanoTime();
+
+        Simulation simulation = Simulation.create(params, new Random(seed), params.isImproved());
+        simulation.run();
+
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = allocatedBytes() - allocatedBefore;
+        Individual bestEver = simulation.getPopulation().getBestEverIndividual();
+        return new double[] { elapsed, simulation.getEventCount(), peakHeap(), allocated,
+                simulation.getBestEverTime(), bestEver == null ? 0 : bestEver.getComfortLevel() };
+    }
+
+    /**
+     * This method returns the bytes allocated so far by the current thread, when the JVM can tell.
+     *
+     * @return the allocated bytes, or 0 if allocation is not measured by this JVM
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * This method prints every metric next to its baseline and counts the regressions. A quality metric
+     * regresses when it is worse than the baseline by more than the quality tolerance, relative to the
+     * baseline. A performance metric worse by more than the tolerance is only advisory unless the
+     * performance is gated, and a timed metric is not compared when either wall time is under MIN_WALL_MS.
+     *
+     * @param instances the instances, in the order they are reported
+     * @param measured the measured metrics, keyed by instance and metric
+     * @param baselines the baselines, or null to only print the measured metrics
+     * @param tolerance the relative tolerance of the performance metrics
+     * @param qualityTolerance the relative tolerance of the quality metrics
+     * @param gatePerformance whether a worse performance metric counts as a regression
+     * @return the number of regressions
+     */
+    private static int printReport(List<String> instances, Map<String, Double> measured, Properties baselines,
+            double tolerance, double qualityTolerance, boolean gatePerformance) {
+        int regressions = 0;
+        System.out.println(String.format("%-36s %-20s %14s %14s %9s  %s", "instance", "metric", "baseline", "current", "change", "status"));
+        for (String instance : instances) {
+            for (int i = 0; i < METRICS.length; i++) {
+                String key = instance + "." + METRICS[i];
+                double current = measured.get(key);
+                String baselineValue = baselines == null ? null : baselines.getProperty(key);
+                if (baselineValue == null) {
+                    System.out.println(String.format("%-36s %-20s %14s %14.4f %9s  %s", instance, METRICS[i], "-", current, "-",
+                            baselines == null ? "recorded" : "new"));
+                    continue;
+                }
+
+                double baseline = Double.parseDouble(baselineValue);
+                double change = baseline == 0 ? (current == 0 ? 0 : Double.POSITIVE_INFINITY) : (current - baseline) / Math.abs(baseline);
+                double worsening = HIGHER_IS_BETTER[i] ? -change : change;
+                boolean worse = worsening > (QUALITY[i] ? qualityTolerance : tolerance);
+                String status = worse ? "REGRESSION" : "ok";
+                if (TIMED[i] && isTooShort(instance, measured, baselines)) {
+                    status = "too short";
+                } else if (worse && !QUALITY[i] && !gatePerformance) {
+                    status = "worse (advisory)";
+                } else if (worse) {
+                    regressions++;
+                }
+                System.out.println(String.format("%-36s %-20s %14.4f %14.4f %+8.1f%%  %s", instance, METRICS[i], baseline, current,
+                        change * 100, status));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * This method tells whether the measured or the baseline wall time of an instance is too short
+     * for the timed metrics to be compared.
+     *
+     * @param instance the instance
+     * @param measured the measured metrics, keyed by instance and metric
+     * @param baselines the baselines
+     * @return true if either wall time is under MIN_WALL_MS
+     */
+    private static boolean isTooShort(String instance, Map<String, Double> measured, Properties baselines) {
+        String baselineWall = baselines.getProperty(instance + ".wall_ms");
+        return measured.get(instance + ".wall_ms") < MIN_WALL_MS
+                || (baselineWall != null && Double.parseDouble(baselineWall) < MIN_WALL_MS);
+    }
+
+    /**
+     * This method writes the measured metrics as the new baselines, one "instance.metric=value" per line.
+     *
+     * @param path the path of the baselines file
+     * @param measured the measured metrics, keyed by instance and metric
+     * @param seeds the number of seeds the metrics were measured with
+     * @param repeat the number of repetitions of every seed
+     */
+    private static void writeBaselines(String path, Map<String, Double> measured, int seeds, int repeat) {
+        try (PrintWriter writer = new PrintWriter(path)) {
+            writer.println("# Regression baselines written by Harness.RegressionSuite --update");
+            writer.println("# java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors()
+                    + " processor(s), " + seeds + " seed(s), " + repeat + " repetition(s)");
+            writer.println("# The timing and allocation metrics are specific to this host; only the quality metrics are gated by default");
+            for (Map.Entry<String, Double> entry : measured.entrySet()) {
+                // Escaped as Properties.load expects, for directories with spaces such as "SIM for improved version"
+                String key = entry.getKey().replace(" ", "\\ ").replace(":", "\\:").replace("=", "\\=");
+                writer.println(key + "=" + entry.getValue());
+            }
+            System.out.println("Baselines written to " + path + ".");
+        } catch (IOException e) {
+            System.out.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package Harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Parser.ArgumentParser;
+import Parser.MatrixGenerator;
+import Parser.SimulationParameters;
+import StochasticSimulation.Simulation;
+
+/**
+ * This class represents a harness that measures how the simulation scales with the size of the instance.
+ *
+ * The ScalingHarness class generates an instance for every rung of a ladder of sizes n x m,
+ * runs the simulation on it and records the wall time, the events per second and the peak heap.
+ * The results are printed as a table and as bar charts against n and m, and can be saved as CSV.
+ *
+ * Rungs with at least a million systems are not generated in memory: the instance is streamed to
+ * a temporary file with MatrixGenerator.writeInstance and read back by the parser, as such an
+ * instance would be in practice, and the file is deleted after the run.
+ *
+ * Usage: java Harness.ScalingHarness [--ladder 10x100,50x1000,...] [--tau t] [--seed s]
+ * [--distribution uniform|clustered|correlated] [--csv file]
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ScalingHarness {
+    /**
+     * The width of the longest bar of the charts.
+     */
+    private static final int CHART_WIDTH = 50;
+    /**
+     * The number of systems from which an instance is streamed through a file instead of generated in memory.
+     */
+    private static final int STREAMED_SYSTEMS = 1_000_000;
+
+    /**
+     * This method is the entry point of the harness.
+     *
+     * @param args the command-line arguments passed to the harness
+     */
+    public static void main(String[] args) {
+        String ladder = "10x100,20x1000,50x10000,100x100000,1000x100000,10x1000000";
+        int tau = 10;
+        long seed = 42;
+        MatrixGenerator.Distribution distribution = MatrixGenerator.Distribution.UNIFORM;
+        String csvPath = null;
+
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--ladder":
+                        ladder = args[i + 1];
+                        break;
+                    case "--tau":
+                        tau = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    case "--distribution":
+                        distribution = MatrixGenerator.Distribution.valueOf(args[i + 1].toUpperCase());
+                        break;
+                    case "--csv":
+                        csvPath = args[i + 1];
+                        break;
+                    default:
+                        System.out.println("Unknown option " + args[i] + ".");
+                        return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid option value: " + e.getMessage());
+            return;
+        }
+
+        List<long[]> results = new ArrayList<>();
+        for (String rung : ladder.split(",")) {
+            String[] size = rung.split("x");
+            int n = Integer.parseInt(size[0]);
+            int m = Integer.parseInt(size[1]);
+            long[] r = measure(n, m, tau, seed, distribution);
+            if (r == null) {
+                continue;
+            }
+            results.add(r);
+            System.out.println("Measured n = " + n + ", m = " + m + ": " + r[2] + " ms");
+        }
+
+        printTable(results);
+        printChart("Wall time (ms)", results, 2);
+        printChart("Peak heap (MB)", results, 4);
+
+        if (csvPath != null) {
+            try (PrintWriter writer = new PrintWriter(csvPath)) {
+                writer.println("n,m,time_ms,events_per_second,peak_heap_mb");
+                for (long[] r : results) {
+                    writer.println(r[0] + "," + r[1] + "," + r[2] + "," + r[3] + "," + r[4]);
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing " + csvPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This method generates an instance and measures one run of the simulation on it.
+     *
+     * @param n the number of patrols
+     * @param m the number of planetary systems
+     * @param tau the final instant of evolution
+     * @param seed the seed of the matrix and of the simulation
+     * @param distribution the distribution of the patrol times
+     * @return n, m, the wall time in milliseconds, the events per second and the peak heap in megabytes,
+     * or null if a streamed instance cannot be written or read back
+     */
+    private static long[] measure(int n, int m, int tau, long seed, MatrixGenerator.Distribution distribution) {
+        MatrixGenerator generator = new MatrixGenerator(seed);
+        generator.setDistribution(distribution);
+        SimulationParameters params;
+        if (m >= STREAMED_SYSTEMS) {
+            params = streamInstance(generator, n, m, tau);
+            if (params == null) {
+                return null;
+            }
+        } else {
+            params = new SimulationParameters(n, m, tau, 10, 20, 10, 1, 1, generator.generateMatrix(n, m));
+        }
+
+        System.gc();
+        resetPeakHeap();
+
+        long startTime = System.nanoTime();
+        Simulation simulation = new Simulation(params, new Random(seed), false);
+        simulation.run();
+        long elapsed = System.nanoTime() - startTime;
+
+        long eventsPerSecond = (long) (simulation.getEventCount() / Math.max(elapsed / 1e9, 1e-9));
+        return new long[] { n, m, elapsed / 1_000_000, eventsPerSecond, peakHeap() / (1024 * 1024) };
+    }
+
+    /**
+     * This method streams an instance to a temporary file and reads it back, deleting the file afterwards.
+     *
+     * @param generator the generator of the matrix
+     * @param n the number of patrols
+     * @param m the number of planetary systems
+     * @param tau the final instant of evolution
+     * @return the parameters read from the file, or null if it cannot be written or read
+     */
+    private static SimulationParameters streamInstance(MatrixGenerator generator, int n, int m, int tau) {
+        File file = null;
+        try {
+            file = File.createTempFile("scaling-" + n + "x" + m + "-", ".txt");
+            long startTime = System.nanoTime();
+            generator.writeInstance(file.getPath(), n, m, tau, 10, 20, 10, 1, 1);
+            long written = System.nanoTime();
+            SimulationParameters params = ArgumentParser.parseArguments(new String[] { "-f", file.getPath() });
+            long read = System.nanoTime();
+            System.out.println("Streamed n = " + n + ", m = " + m + " through " + file.length() / (1024 * 1024) + " MB: written in "
+                    + (written - startTime) / 1_000_000 + " ms, read in " + (read - written) / 1_000_000 + " ms");
+            return params;
+        } catch (IOException e) {
+            System.out.println("Error streaming n = " + n + ", m = " + m + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void printTable(List<long[]> results) {
+        System.out.println();
+        System.out.println(String.format("%8s %10s %10s %12s %10s", "n", "m", "time (ms)", "events/s", "heap (MB)"));
+        for (long[] r : results) {
+            System.out.println(String.format("%8d %10d %10d %12d %10d", r[0], r[1], r[2], r[3], r[4]));
+        }
+    }
+
+    /**
+     * This method prints a horizontal bar chart of one of the measured columns against n x m.
+     *
+     * @param title the title of the chart
+     * @param results the measured rows
+     * @param column the column to chart
+     */
+    private static void printChart(String title, List<long[]> results, int column) {
+        long max = 1;
+        for (long[] r : results) {
+            max = Math.max(max, r[column]);
+        }
+
+        System.out.println();
+        System.out.println(title);
+        for (long[] r : results) {
+            int width = (int) (r[column] * CHART_WIDTH / max);
+            StringBuilder bar = new StringBuilder();
+            for (int i = 0; i < width; i++) {
+                bar.append('#');
+            }
+            System.out.println(String.format("%15s | %s %d", r[0] + "x" + r[1], bar, r[column]));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package MainPackage;
+
+import StochasticSimulation.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import Parser.ArgumentParser;
+import Parser.SimulationParameters;
+
+/**
+ * This class represents a batch run of every instance of a directory in a single JVM.
+ *
+ * The BatchRunner class parses and runs the instances concurrently on a shared, bounded
+ * thread pool. The observations of each instance go to its own results file in an output
+ * directory, named after the instance as in the SIM folder (BigMatrix0-20.txt gives
+ * BigMatrix0-20_results.txt), so the reference results next to the instances are never
+ * overwritten, and a summary table of all the instances is printed once every run has finished.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class BatchRunner {
+    private List<String> instances;
+    private String[] options;
+    private int threads;
+    private File outputDirectory;
+
+    /**
+     * Constructor for BatchRunner.
+     *
+     * @param instances the paths of the input files to run
+     * @param options the options applied to every instance, as given after -d on the command line
+     * @param threads the size of the thread pool
+     * @param outputDirectory the directory the results files are written to
+     */
+    public BatchRunner(List<String> instances, String[] options, int threads, File outputDirectory) {
+        this.instances = instances;
+        this.options = options;
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * This method runs every instance and prints the summary table.
+     */
+    public void run() {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, instances.size())));
+        List<Future<String>> summaries = new ArrayList<>();
+
+        for (String instance : instances) {
+            summaries.add(pool.submit(() -> runInstance(instance)));
+        }
+
+        System.out.println(String.format("%-40s %10s %12s %10s %10s %10s", "instance", "comfort", "policing", "events", "epidemics", "time (ms)"));
+        for (int i = 0; i < instances.size(); i++) {
+            try {
+                System.out.println(summaries.get(i).get());
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println(String.format("%-40s failed: %s", instances.get(i), e.getCause()));
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * This method parses and runs a single instance, writing its observations to its results file.
+     *
+     * @param instance the path of the input file
+     * @return the row of the instance in the summary table
+     * @throws IOException if the results file cannot be written
+     */
+    private String runInstance(String instance) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        String[] args = new String[options.length + 2];
+        args[0] = "-f";
+        args[1] = instance;
+        System.arraycopy(options, 0, args, 2, options.length);
+
+        SimulationParameters params = ArgumentParser.parseArguments(args);
+        if (params == null) {
+            return String.format("%-40s failed to parse", instance);
+        }
+
+        String name = new File(instance).getName();
+        File resultsPath = new File(outputDirectory, name.substring(0, name.length() - ".txt".length()) + "_results.txt");
+        try (PrintStream out = new PrintStream(new FileOutputStream(resultsPath), false, "UTF-8")) {
+            Random random = params.hasSeed() ? new Random(params.getSeed()) : new Random();
+            boolean improved = params.isImproved();
+            boolean compact = params.isCompactOutput();
+            Simulation simulation = Simulation.create(params, random, improved);
+            simulation.addObserver(improved ? new ImprovedSimulationObserver(out, compact) : new SimulationObserver(out, compact));
+            simulation.run();
+            simulation.archiveSolutions();
+
+            long runtime = System.currentTimeMillis() - startTime;
+            out.println("Program runtime: " + runtime + " milliseconds");
+
+            Individual bestEver = simulation.getPopulation().getBestEverIndividual();
+            return String.format("%-40s %10.6f %12.1f %10d %10d %10d", instance,
+                    bestEver == null ? 0 : bestEver.getComfortLevel(), bestEver == null ? 0 : bestEver.getOptimalPatrolTime(),
+                    simulation.getEventCount(), simulation.getEpidemicCount(), runtime);
+        }
+    }
+}
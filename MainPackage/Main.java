@@ -2,10 +2,15 @@ package MainPackage;
 
 import StochasticSimulation.*;
 
+import java.io.File;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import Parser.ArgumentParser;
 import Parser.SimulationParameters;
+import Parser.SweepParameters;
 
 
 /**
@@ -18,6 +23,16 @@ import Parser.SimulationParameters;
  * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
  */
 public class Main {
+    /**
+     * Longest wait, in seconds, for an interrupted run to print its result before the JVM exits.
+     */
+    private static final int SHUTDOWN_GRACE_SECONDS = 10;
+
+    /**
+     * Subdirectory of the instance directory the batch mode writes its results files to.
+     */
+    private static final String BATCH_OUTPUT_DIRECTORY = "batch_results";
+
     /**
      * This method is the main entry point of the program. It initializes the simulation
      * environment, parses arguments, and runs the simulation while tracking its runtime.
@@ -28,6 +43,31 @@ public class Main {
     	
         long startTime = System.currentTimeMillis();
 
+        if (args.length > 0 && args[0].equals("-g")) {
+            if (ArgumentParser.generateInstanceFile(args)) {
+                System.out.println("Instance written to " + args[1]);
+            }
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("-s")) {
+            runSweep(args);
+            System.out.println("Program runtime: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("-c")) {
+            runCoordinator(args);
+            System.out.println("Program runtime: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("-d")) {
+            runBatch(args);
+            System.out.println("Program runtime: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+            return;
+        }
+
         // Method to parse arguments
         SimulationParameters params = ArgumentParser.parseArguments(args);
         if (params == null) {
@@ -36,17 +76,174 @@ public class Main {
         }
 
         // Create random object
-        Random random = new Random();
+        Random random = params.hasSeed() ? new Random(params.getSeed()) : new Random();
         boolean improved = params.isImproved();
-        Simulation simulation = new Simulation(params, random, improved);
-        Observer observer = improved ? new ImprovedSimulationObserver() : new SimulationObserver();
+        Simulation simulation = Simulation.create(params, random, improved);
+        boolean compact = params.isCompactOutput();
+        Observer observer = improved ? new ImprovedSimulationObserver(System.out, compact) : new SimulationObserver(System.out, compact);
         
         simulation.addObserver(observer);
+
+        IslandNode island = null;
+        if (params.isIsland()) {
+            island = IslandNode.connect(params.getIslandHost(), params.getIslandPort(), params.getMatrix(), params.getSparseMatrix());
+            if (island != null) {
+                simulation.addObserver(island);
+            }
+        }
+
+        // On SIGINT or SIGTERM the run stops after the current event and its best-so-far result is still printed
+        CountDownLatch finished = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            simulation.requestStop("interrupted");
+            try {
+                finished.await(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        // With --telemetry, the printBreakdown operation of its MBean prints the breakdown so far without stopping the run
+        Telemetry telemetry = simulation.getTelemetry();
+        if (telemetry != null) {
+            telemetry.registerMBean();
+        }
+
         simulation.run();
+
+        if (simulation.getStopReason() != null) {
+            System.out.println("Stopped before tau: " + simulation.getStopReason() + " after " + simulation.getEventCount() + " events");
+        }
+
+        if (island != null) {
+            island.close();
+            System.out.println("Island " + island.getIslandNumber() + ": " + island.getSentCount() + " elites sent, "
+                    + island.getReceivedCount() + " immigrants received");
+        }
+
+        FitnessCache fitnessCache = simulation.getFitnessCache();
+        if (fitnessCache != null) {
+            System.out.println("Fitness cache: " + fitnessCache.getHits() + " hits, " + fitnessCache.getMisses()
+                    + " misses, hit rate " + fitnessCache.getHitRate() + ", " + fitnessCache.getSize() + " entries");
+        }
+
+        IndividualArena arena = simulation.getPopulation().getArena();
+        if (arena != null) {
+            System.out.println("Arena: " + arena.getUsedSlots() + " slots in use of " + arena.getCapacity() + ", "
+                    + arena.getOffHeapBytes() / 1024 + " KB off-heap");
+        }
+
+        AdmissionPolicy admissionPolicy = simulation.getPopulation().getAdmissionPolicy();
+        if (admissionPolicy != null) {
+            System.out.println("Admission: " + admissionPolicy.getAdmittedCount() + " admitted, " + admissionPolicy.getRejectedCount() + " rejected");
+        }
+
+        if (simulation.getArchive() != null) {
+            System.out.println("Archive: " + simulation.getArchiveSeedCount() + " distributions seeded, "
+                    + simulation.archiveSolutions() + " stored in " + params.getArchiveDirectory());
+        }
+
+        if (simulation.getCostUpdateBatches() > 0) {
+            System.out.println("Cost updates: " + simulation.getCostUpdateCount() + " applied in " + simulation.getCostUpdateBatches()
+                    + " batches, " + simulation.getCostUpdateNanos() / 1000000 + " ms");
+        }
+
+        if (telemetry != null) {
+            telemetry.print(System.out);
+        }
+
+        if (simulation instanceof TauLeapingSimulation) {
+            System.out.println("Leaps: " + ((TauLeapingSimulation) simulation).getLeapCount() + " for " + simulation.getEventCount() + " events");
+        }
+
+        if (improved) {
+            System.out.println("Restarts: " + simulation.getRestartCount() + ", " + simulation.getRestartNanos() / 1000000 + " ms");
+        }
+
+        if (params.isAdaptive()) {
+            float[] rates = simulation.getEffectiveRates();
+            System.out.println("Effective rates: mu = " + rates[0] + ", rho = " + rates[1] + ", delta = " + rates[2]);
+        }
         
         long endTime = System.currentTimeMillis();
         long runtime = endTime - startTime;
 
         System.out.println("Program runtime: " + runtime + " milliseconds");
+        System.out.flush();
+        finished.countDown();
+    }
+
+    /**
+     * This method runs a parameter sweep over every core of the machine and prints its results table.
+     *
+     * @param args the command-line arguments of the sweep
+     */
+    private static void runSweep(String[] args) {
+        SweepParameters sweep = ArgumentParser.parseSweepArguments(args);
+        if (sweep == null) {
+            System.out.println("Failed to parse arguments.");
+            return;
+        }
+
+        ParameterSweep parameterSweep = new ParameterSweep(sweep, Runtime.getRuntime().availableProcessors());
+        List<ParameterSweep.CellResult> results = parameterSweep.run();
+        ParameterSweep.printTable(results, System.out);
+    }
+
+    /**
+     * This method runs the coordinator of a distributed island model until every island has finished.
+     *
+     * @param args the command-line arguments of the coordinator: -c followed by the port and the number of islands
+     */
+    private static void runCoordinator(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Invalid number of arguments for the coordinator.");
+            return;
+        }
+
+        int port;
+        int islands;
+        try {
+            port = Integer.parseInt(args[1]);
+            islands = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid format for coordinator arguments.");
+            return;
+        }
+        if (port < 0 || port > 65535 || islands <= 0) {
+            System.out.println("The coordinator needs a port between 0 and 65535 and a positive number of islands.");
+            return;
+        }
+
+        new IslandCoordinator(port, islands, System.out).run();
+    }
+
+    /**
+     * This method runs every instance of a directory concurrently and prints a summary table.
+     *
+     * @param args the command-line arguments of the batch: -d followed by the directory and the options
+     */
+    private static void runBatch(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Invalid number of arguments for directory input.");
+            return;
+        }
+
+        List<String> instances = ArgumentParser.findInstanceFiles(args[1]);
+        if (instances == null || instances.isEmpty()) {
+            System.out.println("No input files found in " + args[1] + ".");
+            return;
+        }
+
+        // The results go to a subdirectory, so the reference results next to the instances are kept
+        File outputDirectory = new File(args[1], BATCH_OUTPUT_DIRECTORY);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.out.println("Cannot create the output directory " + outputDirectory.getPath() + ".");
+            return;
+        }
+
+        String[] options = java.util.Arrays.copyOfRange(args, 2, args.length);
+        new BatchRunner(instances, options, Runtime.getRuntime().availableProcessors(), outputDirectory).run();
+        System.out.println("Results written to " + outputDirectory.getPath());
     }
 }
@@ -1,8 +1,12 @@
 package Parser;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class represents a parser for command-line arguments and input files
@@ -30,34 +34,586 @@ public class ArgumentParser {
             return null;
         }
 
-        boolean improved = false;
-        if (args[args.length - 1].equals("--improved")) {
-            improved = true;
-            args = java.util.Arrays.copyOf(args, args.length - 1); // Remove the last element
+        // Options start at the first argument prefixed by "--"
+        int optionsStart = 1;
+        while (optionsStart < args.length && !args[optionsStart].startsWith("--")) {
+            optionsStart++;
         }
+        String[] options = java.util.Arrays.copyOfRange(args, optionsStart, args.length);
+        args = java.util.Arrays.copyOf(args, optionsStart);
 
         SimulationParameters params = null;
+        MatrixGenerator generator = null;
         if (args[0].equals("-r")) {
             params = parseRandomMatrixArguments(args);
+            generator = new MatrixGenerator();
         } else if (args[0].equals("-f")) {
             if (args.length != 2) {
                 System.out.println("Invalid number of arguments for file input.");
                 return null;
             }
-            params = parseFileInputArguments(args[1]);
+            params = parseFileInputArguments(args[1], java.util.Arrays.asList(options).contains("--sparse"));
         } else {
             System.out.println("Invalid command.");
             return null;
         }
 
-        if (params != null) {
-            params.setImproved(improved);
+        if (params != null && !parseOptions(options, params, generator)) {
+            return null;
+        }
+
+        // The random matrix is only generated once its seed, range and distribution are known
+        if (params != null && generator != null) {
+            params.setMatrix(generator.generateMatrix(params.getN(), params.getM()));
+            if (java.util.Arrays.asList(options).contains("--sparse")) {
+                params.setSparseMatrix(SparseMatrix.fromDense(params.getMatrix()));
+                params.setMatrix(null);
+            }
+        }
+
+        if (params != null && params.isSparse() && params.hasCostUpdates()) {
+            for (int[] update : params.getCostUpdates()) {
+                if (params.getSparseMatrix().get(update[0], update[1]) == SparseMatrix.NO_ACCESS) {
+                    System.out.println("Patrol " + (update[0] + 1) + " has no access to system " + (update[1] + 1) + "; its time cannot be updated.");
+                    return null;
+                }
+            }
         }
 
         return params;
     }
 
 
+    /**
+     * This method parses the options that may follow the instance arguments and applies them
+     * to the given SimulationParameters object.
+     *
+     * @param options the options, each one prefixed by "--" and followed by its value if it takes one
+     * @param params the parameters the options are applied to
+     * @param generator the generator of the random matrix, or null if the matrix is read from a file
+     * @return true if every option is valid, false otherwise
+     */
+    private static boolean parseOptions(String[] options, SimulationParameters params, MatrixGenerator generator) {
+        try {
+            for (int i = 0; i < options.length; i++) {
+                String option = options[i];
+
+                switch (option) {
+                    case "--improved":
+                        params.setImproved(true);
+                        break;
+                    case "--sparse":
+                        // Already taken into account when the matrix was read or generated
+                        break;
+                    case "--compact-output":
+                        params.setCompactOutput(true);
+                        break;
+                    case "--arena":
+                        params.setArena(true);
+                        break;
+                    case "--batch-eval":
+                        params.setBatchEvaluation(true);
+                        break;
+                    case "--tau-leap":
+                        params.setTauLeapEpsilon(Float.parseFloat(optionValue(options, ++i)));
+                        if (params.getTauLeapEpsilon() <= 0 || params.getTauLeapEpsilon() >= 1) {
+                            System.out.println("The tolerance of the leaps must be between 0 and 1.");
+                            return false;
+                        }
+                        break;
+                    case "--crossover":
+                        params.setCrossoverRate(Float.parseFloat(optionValue(options, ++i)));
+                        if (params.getCrossoverRate() <= 0) {
+                            System.out.println("The crossover parameter must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--warm-start":
+                        params.setWarmStartFraction(Float.parseFloat(optionValue(options, ++i)));
+                        if (params.getWarmStartFraction() <= 0 || params.getWarmStartFraction() > 1) {
+                            System.out.println("The warm-start fraction of the initial population must be between 0 and 1.");
+                            return false;
+                        }
+                        break;
+                    case "--restart-limit":
+                        params.setRestartLimit(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getRestartLimit() < 0) {
+                            System.out.println("The stagnation limit of the restarts cannot be negative.");
+                            return false;
+                        }
+                        break;
+                    case "--elite-fraction":
+                        params.setEliteFraction(Float.parseFloat(optionValue(options, ++i)));
+                        if (params.getEliteFraction() <= 0 || params.getEliteFraction() >= 1) {
+                            System.out.println("The elite fraction of the restarts must be between 0 and 1.");
+                            return false;
+                        }
+                        break;
+                    case "--restart-entropy":
+                        params.setRestartEntropy(Float.parseFloat(optionValue(options, ++i)));
+                        if (params.getRestartEntropy() <= 0 || params.getRestartEntropy() >= 1) {
+                            System.out.println("The entropy below which the population restarts must be between 0 and 1.");
+                            return false;
+                        }
+                        break;
+                    case "--diversity":
+                        params.setDiversityTracking(true);
+                        break;
+                    case "--telemetry":
+                        params.setTelemetry(true);
+                        break;
+                    case "--quantiles":
+                        params.setQuantiles(true);
+                        break;
+                    case "--cost-updates":
+                        readCostUpdates(params, optionValue(options, ++i));
+                        break;
+                    case "--archive":
+                        params.setArchiveDirectory(optionValue(options, ++i));
+                        break;
+                    case "--time-limit":
+                        params.setTimeLimitMillis((long) (Double.parseDouble(optionValue(options, ++i)) * 1000));
+                        if (params.getTimeLimitMillis() <= 0) {
+                            System.out.println("The time limit, in seconds, must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--event-limit":
+                        params.setEventLimit(Long.parseLong(optionValue(options, ++i)));
+                        if (params.getEventLimit() <= 0) {
+                            System.out.println("The event limit must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--offspring":
+                        params.setOffspring(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getOffspring() <= 0) {
+                            System.out.println("The number of offspring per event must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--admit":
+                        params.setAdmittedOffspring(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getAdmittedOffspring() <= 0) {
+                            System.out.println("The number of admitted offspring must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--admission":
+                        applyAdmissionOption(params, optionValue(options, ++i));
+                        break;
+                    case "--island":
+                        String coordinator = optionValue(options, ++i);
+                        int separator = coordinator.lastIndexOf(':');
+                        if (separator <= 0) {
+                            throw new NumberFormatException(coordinator);
+                        }
+                        params.setIsland(coordinator.substring(0, separator), Integer.parseInt(coordinator.substring(separator + 1)));
+                        if (params.getIslandPort() <= 0 || params.getIslandPort() > 65535) {
+                            System.out.println("The port of the coordinator must be between 1 and 65535.");
+                            return false;
+                        }
+                        break;
+                    case "--threads":
+                        params.setThreads(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getThreads() <= 0) {
+                            System.out.println("The number of worker threads must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--adaptive":
+                        params.setAdaptive(true);
+                        break;
+                    case "--rate-bounds":
+                        String[] bounds = optionValue(options, ++i).split(":");
+                        if (bounds.length != 2) {
+                            throw new NumberFormatException(options[i]);
+                        }
+                        params.setRateScaleBounds(Float.parseFloat(bounds[0]), Float.parseFloat(bounds[1]));
+                        if (params.getMinRateScale() <= 0 || params.getMinRateScale() > 1 || params.getMaxRateScale() < 1) {
+                            System.out.println("Rate bounds must satisfy 0 < min <= 1 <= max.");
+                            return false;
+                        }
+                        break;
+                    case "--top-k":
+                        params.setAdaptiveTopK(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getAdaptiveTopK() <= 0) {
+                            System.out.println("The top K of the adaptive mode must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--seed":
+                        params.setSeed(Long.parseLong(optionValue(options, ++i)));
+                        if (generator != null) {
+                            generator.setSeed(params.getSeed());
+                        }
+                        break;
+                    case "--fitness-cache":
+                        params.setFitnessCacheMegabytes(Integer.parseInt(optionValue(options, ++i)));
+                        if (params.getFitnessCacheMegabytes() <= 0) {
+                            System.out.println("The fitness cache size, in megabytes, must be positive.");
+                            return false;
+                        }
+                        break;
+                    case "--value-range":
+                    case "--distribution":
+                        if (generator == null) {
+                            System.out.println("Option " + option + " is only valid for a random matrix.");
+                            return false;
+                        }
+                        applyGeneratorOption(generator, option, optionValue(options, ++i));
+                        break;
+                    default:
+                        System.out.println("Unknown option " + option + ".");
+                        return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid format for option values.");
+            return false;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+
+        if (params.getThreads() > 1 && (params.isArena() || params.isAdaptive() || params.isTauLeaping())) {
+            System.out.println("Option --threads cannot be combined with --arena, --adaptive or --tau-leap.");
+            return false;
+        }
+        if (params.getAdmittedOffspring() > params.getOffspring()) {
+            System.out.println("Option --admit cannot exceed the number of offspring.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.getCrossoverRate() > 0) {
+            System.out.println("Option --crossover cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.hasAdmissionPolicy()) {
+            System.out.println("Option --admission cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.isDiversityTracking()) {
+            System.out.println("Options --diversity and --restart-entropy cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.isQuantiles()) {
+            System.out.println("Option --quantiles cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.isTelemetry()) {
+            System.out.println("Option --telemetry cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getThreads() > 1 && params.hasCostUpdates()) {
+            System.out.println("Option --cost-updates cannot be combined with --threads.");
+            return false;
+        }
+        if (params.getOffspring() > 1 && params.isArena()) {
+            System.out.println("Option --offspring cannot be combined with --arena.");
+            return false;
+        }
+        if (params.getOffspring() > 1 && params.getFitnessCacheMegabytes() > 0) {
+            System.out.println("Option --offspring cannot be combined with --fitness-cache.");
+            return false;
+        }
+        if (params.isTauLeaping() && params.isAdaptive()) {
+            System.out.println("Option --tau-leap cannot be combined with --adaptive.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method applies the rules of the admission policy, a comma-separated list of
+     * replace-worst, no-duplicates and threshold:k.
+     *
+     * @param params the parameters the rules are applied to
+     * @param value the value of the option
+     * @throws IllegalArgumentException if a rule is unknown or k is not positive
+     */
+    private static void applyAdmissionOption(SimulationParameters params, String value) {
+        for (String rule : value.split(",")) {
+            if (rule.equals("replace-worst")) {
+                params.setAdmissionReplaceWorst(true);
+            } else if (rule.equals("no-duplicates")) {
+                params.setAdmissionNoDuplicates(true);
+            } else if (rule.startsWith("threshold:")) {
+                params.setAdmissionThreshold(Integer.parseInt(rule.substring("threshold:".length())));
+                if (params.getAdmissionThreshold() <= 0) {
+                    throw new IllegalArgumentException("The rank of the admission threshold must be positive.");
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown admission rule " + rule + ".");
+            }
+        }
+    }
+
+    /**
+     * This method reads the cost updates applied while the simulation runs, one per line as
+     * "instant patrol system time", patrols and systems numbered from 1. Blank lines and lines
+     * starting with # are skipped.
+     *
+     * @param params the parameters the updates are applied to
+     * @param filePath the path to the file of cost updates
+     * @throws IllegalArgumentException if the file cannot be read or a line is invalid
+     */
+    private static void readCostUpdates(SimulationParameters params, String filePath) {
+        List<Float> instants = new ArrayList<>();
+        List<int[]> updates = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("Invalid number of fields in line " + lineNumber + " of the cost updates.");
+                }
+                float instant = Float.parseFloat(fields[0]);
+                int patrol = Integer.parseInt(fields[1]) - 1;
+                int system = Integer.parseInt(fields[2]) - 1;
+                int time = Integer.parseInt(fields[3]);
+                if (!(instant >= 0) || patrol < 0 || patrol >= params.getN() || system < 0 || system >= params.getM() || time < 0) {
+                    throw new IllegalArgumentException("Invalid cost update in line " + lineNumber + ": the instant and the time cannot be negative, and the patrol and the system must be in the matrix.");
+                }
+                instants.add(instant);
+                updates.add(new int[] { patrol, system, time });
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error reading the cost updates: " + e.getMessage());
+        }
+
+        float[] costUpdateInstants = new float[instants.size()];
+        for (int i = 0; i < costUpdateInstants.length; i++) {
+            costUpdateInstants[i] = instants.get(i);
+        }
+        params.setCostUpdates(costUpdateInstants, updates.toArray(new int[0][]));
+    }
+
+    /**
+     * This method applies an option of the random matrix generator.
+     *
+     * @param generator the generator the option is applied to
+     * @param option the option, either --value-range min:max or --distribution uniform|clustered|correlated
+     * @param value the value of the option
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    private static void applyGeneratorOption(MatrixGenerator generator, String option, String value) {
+        if (option.equals("--value-range")) {
+            String[] range = value.split(":");
+            if (range.length != 2) {
+                throw new NumberFormatException(value);
+            }
+            generator.setValueRange(Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+        } else {
+            try {
+                generator.setDistribution(MatrixGenerator.Distribution.valueOf(value.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown distribution " + value + ".");
+            }
+        }
+    }
+
+    /**
+     * This method generates a random instance and streams it straight to an input file.
+     * Expected form: -g file n m tau v vMax mu rho delta [--seed s] [--value-range min:max]
+     * [--distribution uniform|clustered|correlated].
+     *
+     * @param args the command-line arguments passed to the program
+     * @return true if the file was written, false otherwise
+     */
+    public static boolean generateInstanceFile(String[] args) {
+
+        if (args.length < 10) {
+            System.out.println("Insufficient number of arguments for instance generation.");
+            return false;
+        }
+
+        String filePath = args[1];
+        String[] instanceArgs = new String[9];
+        instanceArgs[0] = "-r";
+        System.arraycopy(args, 2, instanceArgs, 1, 8);
+        String[] options = java.util.Arrays.copyOfRange(args, 10, args.length);
+
+        SimulationParameters params = parseRandomMatrixArguments(instanceArgs);
+        MatrixGenerator generator = new MatrixGenerator();
+        if (params == null || !parseOptions(options, params, generator)) {
+            return false;
+        }
+
+        try {
+            generator.writeInstance(filePath, params.getN(), params.getM(), params.getTau(), params.getV(),
+                    params.getVMax(), params.getMu(), params.getRho(), params.getDelta());
+        } catch (IOException e) {
+            System.out.println("Error writing the instance file: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method discovers the input files of a directory, that is, every .txt file
+     * that is not the results file of another instance.
+     *
+     * @param directoryPath the path of the directory
+     * @return the sorted paths of the input files, or null if the directory cannot be read
+     */
+    public static List<String> findInstanceFiles(String directoryPath) {
+        File[] files = new File(directoryPath).listFiles();
+        if (files == null) {
+            System.out.println("Cannot read the directory " + directoryPath + ".");
+            return null;
+        }
+
+        List<String> instances = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && name.endsWith(".txt") && !name.endsWith("_results.txt")) {
+                instances.add(file.getPath());
+            }
+        }
+        Collections.sort(instances);
+        return instances;
+    }
+
+    /**
+     * This method returns the value of an option.
+     *
+     * @param options the options
+     * @param index the index of the value
+     * @return the value of the option
+     * @throws IllegalArgumentException if the option has no value
+     */
+    private static String optionValue(String[] options, int index) {
+        if (index >= options.length) {
+            throw new IllegalArgumentException("Missing value for option " + options[index - 1] + ".");
+        }
+        return options[index];
+    }
+
+    /**
+     * This method reads the command-line arguments of a parameter sweep and parses them
+     * into a SweepParameters object. The instance file is parsed only once.
+     * Expected form: -s file [--mu grid] [--rho grid] [--delta grid] [--v grid] [--vmax grid]
+     * [--replicas k] [--seed s] [--prune ratio], where a grid is a comma separated list
+     * (1,2,5) or an inclusive range with an optional step (1:10 or 1:10:2).
+     *
+     * @param args the command-line arguments passed to the program
+     * @return a SweepParameters object if parsing is successful, or null if it fails
+     */
+    public static SweepParameters parseSweepArguments(String[] args) {
+
+        if (args.length < 2 || (args.length - 2) % 2 != 0) {
+            System.out.println("Invalid number of arguments for a parameter sweep.");
+            return null;
+        }
+
+        SimulationParameters base = parseFileInputArguments(args[1], false);
+        if (base == null) {
+            return null;
+        }
+
+        SweepParameters sweep = new SweepParameters(base);
+
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                String option = args[i];
+                String value = args[i + 1];
+
+                switch (option) {
+                    case "--mu":
+                        sweep.setMuValues(parseGrid(value));
+                        break;
+                    case "--rho":
+                        sweep.setRhoValues(parseGrid(value));
+                        break;
+                    case "--delta":
+                        sweep.setDeltaValues(parseGrid(value));
+                        break;
+                    case "--v":
+                        sweep.setVValues(parseGrid(value));
+                        break;
+                    case "--vmax":
+                        sweep.setVMaxValues(parseGrid(value));
+                        break;
+                    case "--replicas":
+                        sweep.setReplicas(Integer.parseInt(value));
+                        break;
+                    case "--seed":
+                        sweep.setSeed(Long.parseLong(value));
+                        break;
+                    case "--prune":
+                        sweep.setPruneRatio(Float.parseFloat(value));
+                        break;
+                    default:
+                        System.out.println("Unknown sweep option " + option + ".");
+                        return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid format for sweep values.");
+            return null;
+        }
+
+        if (sweep.getReplicas() <= 0) {
+            System.out.println("Number of replicas must be positive.");
+            return null;
+        }
+        if (sweep.getPruneRatio() < 0 || sweep.getPruneRatio() > 1) {
+            System.out.println("Prune ratio must be between 0 and 1.");
+            return null;
+        }
+
+        return sweep;
+    }
+
+    /**
+     * This method parses a grid of values, given either as a comma separated list
+     * or as an inclusive range min:max with an optional step min:max:step.
+     *
+     * @param grid the textual grid
+     * @return the values of the grid
+     * @throws NumberFormatException if the grid is malformed or holds a negative value
+     */
+    private static int[] parseGrid(String grid) {
+        int[] values;
+
+        if (grid.contains(":")) {
+            String[] bounds = grid.split(":");
+            if (bounds.length < 2 || bounds.length > 3) {
+                throw new NumberFormatException(grid);
+            }
+            int min = Integer.parseInt(bounds[0]);
+            int max = Integer.parseInt(bounds[1]);
+            int step = bounds.length == 3 ? Integer.parseInt(bounds[2]) : 1;
+            if (step <= 0 || max < min) {
+                throw new NumberFormatException(grid);
+            }
+            values = new int[(max - min) / step + 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = min + i * step;
+            }
+        } else {
+            String[] items = grid.split(",");
+            values = new int[items.length];
+            for (int i = 0; i < items.length; i++) {
+                values[i] = Integer.parseInt(items[i].trim());
+            }
+        }
+
+        for (int value : values) {
+            if (value < 0) {
+                throw new NumberFormatException(grid);
+            }
+        }
+        return values;
+    }
+
+
     /**
      * This method parses arguments for generating a random matrix.
      *
@@ -107,22 +663,22 @@ public class ArgumentParser {
             return null;
         }
 
-        // Generate a random matrix
-        MatrixGenerator generator = new MatrixGenerator();
-        int[][] matrix = generator.generateRandomMatrix(n, m, 10); // Using 10 as a placeholder max value
-
-        return new SimulationParameters(n, m, tau, v, vMax, mu, rho, delta, matrix);
+        // The matrix is generated once the generator options have been parsed
+        return new SimulationParameters(n, m, tau, v, vMax, mu, rho, delta, null);
     }
 
 
 
     /**
      * This method parses arguments from a file to create a SimulationParameters object.
+     * A negative time marks a patrol that cannot reach a system; such entries are only
+     * accepted when the matrix is read as a sparse matrix, which stores only the reachable pairs.
      *
      * @param filePath the path to the input file containing the simulation parameters and matrix
+     * @param sparse whether to read the matrix into a SparseMatrix instead of a dense array
      * @return a SimulationParameters object if parsing is successful, or null if it fails
      */
-    private static SimulationParameters parseFileInputArguments(String filePath) {
+    private static SimulationParameters parseFileInputArguments(String filePath, boolean sparse) {
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String line = br.readLine();
             
@@ -171,7 +727,8 @@ public class ArgumentParser {
                 return null;
             }
 
-            int[][] matrix = new int[n][m];
+            int[][] matrix = sparse ? null : new int[n][m];
+            SparseMatrix.Builder sparseBuilder = sparse ? new SparseMatrix.Builder(n, m) : null;
             
             for (int i = 0; i < n; i++) {
                 line = br.readLine();
@@ -190,7 +747,17 @@ public class ArgumentParser {
 
                 try {
                     for (int j = 0; j < m; j++) {
-                        matrix[i][j] = Integer.parseInt(matrixRow[j]);
+                        int time = Integer.parseInt(matrixRow[j]);
+                        if (sparse) {
+                            if (time >= 0) {
+                                sparseBuilder.add(i, j, time);
+                            }
+                        } else if (time < 0) {
+                            System.out.println("Inaccessible system in matrix row " + (i + 1) + "; use --sparse to read it.");
+                            return null;
+                        } else {
+                            matrix[i][j] = time;
+                        }
                     }
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid format for matrix elements in row " + (i + 1) + ".");
@@ -198,6 +765,17 @@ public class ArgumentParser {
                 }
             }
 
+            if (sparse) {
+                int unreachable = sparseBuilder.findUnreachableSystem();
+                if (unreachable >= 0) {
+                    System.out.println("Planetary system " + (unreachable + 1) + " cannot be reached by any patrol.");
+                    return null;
+                }
+                SimulationParameters result = new SimulationParameters(n, m, tau, v, vMax, mu, rho, delta, null);
+                result.setSparseMatrix(sparseBuilder.build());
+                return result;
+            }
+
             return new SimulationParameters(n, m, tau, v, vMax, mu, rho, delta, matrix);
 
         } catch (IOException e) {
@@ -1,25 +1,87 @@
 package Parser;
 
-import java.util.Random;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * This class represents a generator for random matrices.
  *
  * The MatrixGenerator class provides methods to generate a matrix with
- * specified dimensions and random values within a given range.
+ * specified dimensions and random values within a given range, either in memory
+ * or streamed straight to an input file. Rows are filled in parallel, each one
+ * from its own stream split from a single seed, so the same seed always yields
+ * the same matrix whatever the number of threads.
  *
  * @version 1.0
  * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
  */
 public class MatrixGenerator {
-    private final Random random;
+    /**
+     * The number of rows generated in parallel before being written to disk.
+     */
+    private static final int ROWS_PER_BLOCK = 64;
+
+    /**
+     * This enum represents the ways the patrol times can be distributed.
+     * UNIFORM draws every time independently, CLUSTERED makes every patrol fast on the systems
+     * of its own cluster and slow elsewhere, and CORRELATED multiplies a workload per system by
+     * a speed per patrol, so fast patrols are fast everywhere.
+     */
+    public enum Distribution {
+        UNIFORM, CLUSTERED, CORRELATED
+    }
+
+    private long seed;
+    private int minValue;
+    private int maxValue;
+    private Distribution distribution;
 
     /**
      * Constructor for MatrixGenerator.
-     * Initializes a new Random object for generating random numbers.
+     * Initializes the generator with a random seed and uniform values between 1 and 10.
      */
     public MatrixGenerator() {
-        this.random = new Random();
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor for MatrixGenerator.
+     * Initializes the generator with the given seed and uniform values between 1 and 10.
+     *
+     * @param seed the seed all the random streams are split from
+     */
+    public MatrixGenerator(long seed) {
+        this.seed = seed;
+        this.minValue = 1;
+        this.maxValue = 10;
+        this.distribution = Distribution.UNIFORM;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * This method sets the inclusive range of the generated values. Every time is at least 1,
+     * since a patrol time of 0 would give a comfort level of 0 or NaN.
+     *
+     * @param minValue the minimum value for any element in the matrix
+     * @param maxValue the maximum value for any element in the matrix
+     * @throws IllegalArgumentException if minValue is less than 1 or greater than maxValue
+     */
+    public void setValueRange(int minValue, int maxValue) {
+        if (minValue < 1 || maxValue < minValue) {
+            throw new IllegalArgumentException("Value range must satisfy 1 <= min <= max.");
+        }
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    public void setDistribution(Distribution distribution) {
+        this.distribution = distribution;
     }
 
     /**
@@ -32,12 +94,151 @@ public class MatrixGenerator {
      * @return a 2D array representing the generated random matrix
      */
     public int[][] generateRandomMatrix(int n, int m, int maxValue) {
-        int[][] matrix = new int[n][m];
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < m; j++) {
-                matrix[i][j] = random.nextInt(maxValue) + 1;
+        setValueRange(1, maxValue);
+        return generateMatrix(n, m);
+    }
+
+    /**
+     * This method generates a matrix with the specified dimensions using the
+     * configured seed, value range and distribution.
+     *
+     * @param n the number of rows in the matrix
+     * @param m the number of columns in the matrix
+     * @return a 2D array representing the generated matrix
+     */
+    public int[][] generateMatrix(int n, int m) {
+        int[][] matrix = new int[n][];
+        SplittableRandom[] streams = splitStreams(n);
+        int[] workloads = systemWorkloads(m);
+        IntStream.range(0, n).parallel().forEach(row -> matrix[row] = generateRow(row, n, m, streams[row], workloads));
+        return matrix;
+    }
+
+    /**
+     * This method streams an input file straight to disk, without ever holding the whole matrix
+     * in memory. Blocks of rows are generated in parallel and written in order.
+     *
+     * @param filePath the path of the input file to write
+     * @param n the number of patrols
+     * @param m the number of planetary systems
+     * @param tau the final instant of evolution
+     * @param v the initial population
+     * @param vMax the maximum population
+     * @param mu the parameter of death
+     * @param rho the parameter of reproduction
+     * @param delta the parameter of mutation
+     * @throws IOException if the file cannot be written
+     */
+    public void writeInstance(String filePath, int n, int m, int tau, int v, int vMax, int mu, int rho, int delta) throws IOException {
+        SplittableRandom[] streams = splitStreams(n);
+        int[] workloads = systemWorkloads(m);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath), 1 << 16)) {
+            writer.write(n + " " + m + " " + tau + " " + v + " " + vMax + " " + mu + " " + rho + " " + delta);
+            writer.newLine();
+
+            for (int first = 0; first < n; first += ROWS_PER_BLOCK) {
+                int start = first;
+                int end = Math.min(n, first + ROWS_PER_BLOCK);
+                String[] lines = new String[end - start];
+
+                IntStream.range(start, end).parallel().forEach(row -> {
+                    int[] values = generateRow(row, n, m, streams[row], workloads);
+                    StringBuilder sb = new StringBuilder(m * 4);
+                    for (int j = 0; j < m; j++) {
+                        if (j > 0) {
+                            sb.append(' ');
+                        }
+                        sb.append(values[j]);
+                    }
+                    lines[row - start] = sb.toString();
+                });
+
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
             }
         }
-        return matrix;
+    }
+
+    /**
+     * This method splits one random stream per row from the seed, in row order,
+     * so that each row is reproducible independently of the thread that fills it.
+     *
+     * @param n the number of rows
+     * @return the stream of each row
+     */
+    private SplittableRandom[] splitStreams(int n) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[n];
+        for (int row = 0; row < n; row++) {
+            streams[row] = root.split();
+        }
+        return streams;
+    }
+
+    /**
+     * This method draws the workload of each system, shared by every row of the correlated distribution.
+     *
+     * @param m the number of systems
+     * @return the workload of each system, or null if the distribution does not use workloads
+     */
+    private int[] systemWorkloads(int m) {
+        if (distribution != Distribution.CORRELATED) {
+            return null;
+        }
+        SplittableRandom random = new SplittableRandom(~seed);
+        int[] workloads = new int[m];
+        for (int j = 0; j < m; j++) {
+            workloads[j] = random.nextInt(minValue, maxValue + 1);
+        }
+        return workloads;
+    }
+
+    /**
+     * This method generates one row of the matrix, that is, the times of one patrol.
+     *
+     * @param row the index of the row
+     * @param n the number of rows
+     * @param m the number of columns
+     * @param random the stream of the row
+     * @param workloads the workload of each system, used by the correlated distribution
+     * @return the values of the row
+     */
+    private int[] generateRow(int row, int n, int m, SplittableRandom random, int[] workloads) {
+        int[] values = new int[m];
+        int span = maxValue - minValue + 1;
+
+        switch (distribution) {
+            case CLUSTERED: {
+                // Patrols and systems are split into the same number of clusters
+                int clusters = Math.max(1, (int) Math.sqrt(n));
+                int home = row % clusters;
+                int quarter = Math.max(1, span / 4);
+                for (int j = 0; j < m; j++) {
+                    if (j % clusters == home) {
+                        values[j] = minValue + random.nextInt(quarter);
+                    } else {
+                        values[j] = maxValue - random.nextInt(quarter);
+                    }
+                }
+                break;
+            }
+            case CORRELATED: {
+                // Speed of the patrol between 0.5 and 2, with a 10% noise per system
+                double speed = 0.5 + 1.5 * random.nextDouble();
+                for (int j = 0; j < m; j++) {
+                    double time = workloads[j] / speed * (0.9 + 0.2 * random.nextDouble());
+                    values[j] = (int) Math.max(minValue, Math.min(maxValue, Math.round(time)));
+                }
+                break;
+            }
+            default:
+                for (int j = 0; j < m; j++) {
+                    values[j] = minValue + random.nextInt(span);
+                }
+        }
+        return values;
     }
 }
@@ -10,7 +10,39 @@ public class SimulationParameters {
     private int rho;
     private int delta;
     private int[][] matrix;
+    private SparseMatrix sparseMatrix;
     private boolean improved;
+    private boolean adaptive;
+    private float minRateScale;
+    private float maxRateScale;
+    private int adaptiveTopK;
+    private Long seed;
+    private int fitnessCacheMegabytes;
+    private boolean compactOutput;
+    private boolean arena;
+    private boolean batchEvaluation;
+    private int threads;
+    private float tauLeapEpsilon;
+    private float crossoverRate;
+    private float warmStartFraction;
+    private int restartLimit;
+    private long timeLimitMillis;
+    private long eventLimit;
+    private int offspring;
+    private int admittedOffspring;
+    private int admissionThreshold;
+    private boolean admissionNoDuplicates;
+    private boolean admissionReplaceWorst;
+    private boolean diversityTracking;
+    private float restartEntropy;
+    private boolean telemetry;
+    private boolean quantiles;
+    private float[] costUpdateInstants;
+    private int[][] costUpdates;
+    private String archiveDirectory;
+    private float eliteFraction;
+    private String islandHost;
+    private int islandPort;
 
     public SimulationParameters(int n, int m, int tau, int v, int vMax, int mu, int rho, int delta, int[][] matrix) {
         this.n = n;
@@ -23,6 +55,15 @@ public class SimulationParameters {
         this.delta = delta;
         this.matrix = matrix;
         this.improved = false;
+        this.adaptive = false;
+        this.minRateScale = 0.1f;
+        this.maxRateScale = 10f;
+        this.adaptiveTopK = 5;
+        this.threads = 1;
+        this.restartLimit = 10;
+        this.eliteFraction = 0.2f;
+        this.offspring = 1;
+        this.admittedOffspring = 1;
     }
 
     public int getN() {
@@ -61,6 +102,22 @@ public class SimulationParameters {
         return matrix;
     }
 
+    public void setMatrix(int[][] matrix) {
+        this.matrix = matrix;
+    }
+
+    public SparseMatrix getSparseMatrix() {
+        return sparseMatrix;
+    }
+
+    public void setSparseMatrix(SparseMatrix sparseMatrix) {
+        this.sparseMatrix = sparseMatrix;
+    }
+
+    public boolean isSparse() {
+        return sparseMatrix != null;
+    }
+
     public boolean isImproved() {
         return improved;
     }
@@ -68,4 +125,267 @@ public class SimulationParameters {
     public void setImproved(boolean improved) {
         this.improved = improved;
     }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public float getMinRateScale() {
+        return minRateScale;
+    }
+
+    public float getMaxRateScale() {
+        return maxRateScale;
+    }
+
+    public void setRateScaleBounds(float minRateScale, float maxRateScale) {
+        this.minRateScale = minRateScale;
+        this.maxRateScale = maxRateScale;
+    }
+
+    public int getAdaptiveTopK() {
+        return adaptiveTopK;
+    }
+
+    public void setAdaptiveTopK(int adaptiveTopK) {
+        this.adaptiveTopK = adaptiveTopK;
+    }
+
+    public boolean hasSeed() {
+        return seed != null;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getFitnessCacheMegabytes() {
+        return fitnessCacheMegabytes;
+    }
+
+    public void setFitnessCacheMegabytes(int fitnessCacheMegabytes) {
+        this.fitnessCacheMegabytes = fitnessCacheMegabytes;
+    }
+
+    public boolean isCompactOutput() {
+        return compactOutput;
+    }
+
+    public void setCompactOutput(boolean compactOutput) {
+        this.compactOutput = compactOutput;
+    }
+
+    public boolean isArena() {
+        return arena;
+    }
+
+    public void setArena(boolean arena) {
+        this.arena = arena;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public float getTauLeapEpsilon() {
+        return tauLeapEpsilon;
+    }
+
+    public void setTauLeapEpsilon(float tauLeapEpsilon) {
+        this.tauLeapEpsilon = tauLeapEpsilon;
+    }
+
+    public boolean isTauLeaping() {
+        return tauLeapEpsilon > 0;
+    }
+
+    public float getCrossoverRate() {
+        return crossoverRate;
+    }
+
+    public void setCrossoverRate(float crossoverRate) {
+        this.crossoverRate = crossoverRate;
+    }
+
+    public boolean isCrossover() {
+        return crossoverRate > 0;
+    }
+
+    public String getIslandHost() {
+        return islandHost;
+    }
+
+    public int getIslandPort() {
+        return islandPort;
+    }
+
+    public void setIsland(String islandHost, int islandPort) {
+        this.islandHost = islandHost;
+        this.islandPort = islandPort;
+    }
+
+    public boolean isIsland() {
+        return islandHost != null;
+    }
+
+    public float getWarmStartFraction() {
+        return warmStartFraction;
+    }
+
+    public void setWarmStartFraction(float warmStartFraction) {
+        this.warmStartFraction = warmStartFraction;
+    }
+
+    public int getRestartLimit() {
+        return restartLimit;
+    }
+
+    public void setRestartLimit(int restartLimit) {
+        this.restartLimit = restartLimit;
+    }
+
+    public float getEliteFraction() {
+        return eliteFraction;
+    }
+
+    public void setEliteFraction(float eliteFraction) {
+        this.eliteFraction = eliteFraction;
+    }
+
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    public long getEventLimit() {
+        return eventLimit;
+    }
+
+    public void setEventLimit(long eventLimit) {
+        this.eventLimit = eventLimit;
+    }
+
+    public int getOffspring() {
+        return offspring;
+    }
+
+    public void setOffspring(int offspring) {
+        this.offspring = offspring;
+    }
+
+    public int getAdmittedOffspring() {
+        return admittedOffspring;
+    }
+
+    public void setAdmittedOffspring(int admittedOffspring) {
+        this.admittedOffspring = admittedOffspring;
+    }
+
+    public int getAdmissionThreshold() {
+        return admissionThreshold;
+    }
+
+    public void setAdmissionThreshold(int admissionThreshold) {
+        this.admissionThreshold = admissionThreshold;
+    }
+
+    public boolean isAdmissionNoDuplicates() {
+        return admissionNoDuplicates;
+    }
+
+    public void setAdmissionNoDuplicates(boolean admissionNoDuplicates) {
+        this.admissionNoDuplicates = admissionNoDuplicates;
+    }
+
+    public boolean isAdmissionReplaceWorst() {
+        return admissionReplaceWorst;
+    }
+
+    public void setAdmissionReplaceWorst(boolean admissionReplaceWorst) {
+        this.admissionReplaceWorst = admissionReplaceWorst;
+    }
+
+    public boolean hasAdmissionPolicy() {
+        return admissionThreshold > 0 || admissionNoDuplicates || admissionReplaceWorst;
+    }
+
+    public boolean isDiversityTracking() {
+        return diversityTracking || restartEntropy > 0;
+    }
+
+    public void setDiversityTracking(boolean diversityTracking) {
+        this.diversityTracking = diversityTracking;
+    }
+
+    public float getRestartEntropy() {
+        return restartEntropy;
+    }
+
+    public void setRestartEntropy(float restartEntropy) {
+        this.restartEntropy = restartEntropy;
+    }
+
+    public boolean isTelemetry() {
+        return telemetry;
+    }
+
+    public void setTelemetry(boolean telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    public boolean isQuantiles() {
+        return quantiles;
+    }
+
+    public void setQuantiles(boolean quantiles) {
+        this.quantiles = quantiles;
+    }
+
+    public float[] getCostUpdateInstants() {
+        return costUpdateInstants;
+    }
+
+    public int[][] getCostUpdates() {
+        return costUpdates;
+    }
+
+    public void setCostUpdates(float[] costUpdateInstants, int[][] costUpdates) {
+        this.costUpdateInstants = costUpdateInstants;
+        this.costUpdates = costUpdates;
+    }
+
+    public boolean hasCostUpdates() {
+        return costUpdates != null && costUpdates.length > 0;
+    }
+
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public void setArchiveDirectory(String archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    public boolean isBatchEvaluation() {
+        return batchEvaluation;
+    }
+
+    public void setBatchEvaluation(boolean batchEvaluation) {
+        this.batchEvaluation = batchEvaluation;
+    }
 }
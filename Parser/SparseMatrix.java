@@ -0,0 +1,304 @@
+package Parser;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class represents a sparse matrix of patrol times.
+ *
+ * The SparseMatrix class stores only the patrol/system pairs a patrol can actually reach,
+ * in compressed sparse columns: for every system, the sorted indices of the patrols allowed
+ * to reach it and the corresponding times. Pairs that are not stored have no access, so
+ * memory scales with the number of reachable pairs instead of n x m.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class SparseMatrix {
+    /**
+     * The value returned for a patrol/system pair without access, and used in input files to mark it.
+     */
+    public static final int NO_ACCESS = -1;
+
+    private int n;
+    private int m;
+    private int[] systemStart;
+    private int[] patrols;
+    private int[] times;
+    private int[] minTimes;
+
+    private SparseMatrix(int n, int m, int[] systemStart, int[] patrols, int[] times) {
+        this.n = n;
+        this.m = m;
+        this.systemStart = systemStart;
+        this.patrols = patrols;
+        this.times = times;
+        this.minTimes = new int[m];
+        for (int system = 0; system < m; system++) {
+            int min = Integer.MAX_VALUE;
+            for (int k = systemStart[system]; k < systemStart[system + 1]; k++) {
+                min = Math.min(min, times[k]);
+            }
+            minTimes[system] = min;
+        }
+    }
+
+    /**
+     * This method builds a sparse matrix from a dense one, dropping the negative entries.
+     *
+     * @param matrix the dense matrix of patrol times
+     * @return the sparse matrix
+     */
+    public static SparseMatrix fromDense(int[][] matrix) {
+        Builder builder = new Builder(matrix.length, matrix[0].length);
+        for (int patrol = 0; patrol < matrix.length; patrol++) {
+            for (int system = 0; system < matrix[patrol].length; system++) {
+                if (matrix[patrol][system] >= 0) {
+                    builder.add(patrol, system, matrix[patrol][system]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * This method copies the matrix, so that the times of the copy can be changed on their own.
+     *
+     * @return a copy of the matrix, sharing only the positions of the reachable pairs
+     */
+    public SparseMatrix copy() {
+        return new SparseMatrix(n, m, systemStart, patrols, times.clone());
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * This method returns the number of reachable patrol/system pairs.
+     *
+     * @return the number of stored entries
+     */
+    public int getNonZeroCount() {
+        return patrols.length;
+    }
+
+    /**
+     * This method returns the time a patrol takes to handle a system.
+     *
+     * @param patrol the index of the patrol
+     * @param system the index of the system
+     * @return the time, or NO_ACCESS if the patrol cannot reach the system
+     */
+    public int get(int patrol, int system) {
+        int k = Arrays.binarySearch(patrols, systemStart[system], systemStart[system + 1], patrol);
+        return k >= 0 ? times[k] : NO_ACCESS;
+    }
+
+    /**
+     * This method changes the time a patrol takes to handle a system it can already reach,
+     * keeping the shortest time of the system up to date.
+     *
+     * @param patrol the index of the patrol
+     * @param system the index of the system
+     * @param time the new time, not negative
+     * @return the previous time, or NO_ACCESS if the patrol cannot reach the system, in which case nothing changes
+     */
+    public int set(int patrol, int system, int time) {
+        int k = Arrays.binarySearch(patrols, systemStart[system], systemStart[system + 1], patrol);
+        if (k < 0) {
+            return NO_ACCESS;
+        }
+        int previous = times[k];
+        times[k] = time;
+        if (time <= minTimes[system]) {
+            minTimes[system] = time;
+        } else if (previous == minTimes[system]) {
+            int min = Integer.MAX_VALUE;
+            for (int j = systemStart[system]; j < systemStart[system + 1]; j++) {
+                min = Math.min(min, times[j]);
+            }
+            minTimes[system] = min;
+        }
+        return previous;
+    }
+
+    /**
+     * This method returns the number of patrols allowed to reach a system.
+     *
+     * @param system the index of the system
+     * @return the number of allowed patrols
+     */
+    public int getAllowedCount(int system) {
+        return systemStart[system + 1] - systemStart[system];
+    }
+
+    /**
+     * This method returns the k-th patrol allowed to reach a system, in increasing patrol order.
+     *
+     * @param system the index of the system
+     * @param k the rank of the patrol among the allowed ones
+     * @return the index of the patrol
+     */
+    public int getAllowedPatrol(int system, int k) {
+        return patrols[systemStart[system] + k];
+    }
+
+    /**
+     * This method returns the time the k-th patrol allowed to reach a system takes to handle it.
+     *
+     * @param system the index of the system
+     * @param k the rank of the patrol among the allowed ones
+     * @return the time of that patrol on the system
+     */
+    public int getAllowedTime(int system, int k) {
+        return times[systemStart[system] + k];
+    }
+
+    /**
+     * This method returns the shortest time any patrol takes to handle a system.
+     *
+     * @param system the index of the system
+     * @return the minimum time over the allowed patrols
+     */
+    public int getMinTime(int system) {
+        return minTimes[system];
+    }
+
+    /**
+     * This method draws a random patrol among the ones allowed to reach a system.
+     *
+     * @param system the index of the system
+     * @param exclude a patrol that must not be drawn, or -1
+     * @param random the Random object used for the draw
+     * @return the index of the drawn patrol, or -1 if no other patrol can reach the system
+     */
+    public int randomPatrol(int system, int exclude, Random random) {
+        int start = systemStart[system];
+        int count = systemStart[system + 1] - start;
+        int excluded = exclude < 0 ? -1 : Arrays.binarySearch(patrols, start, start + count, exclude);
+
+        if (excluded < 0) {
+            return count == 0 ? -1 : patrols[start + random.nextInt(count)];
+        }
+        if (count == 1) {
+            return -1;
+        }
+        int k = start + random.nextInt(count - 1);
+        return patrols[k >= excluded ? k + 1 : k];
+    }
+
+    /**
+     * This class builds a SparseMatrix from entries given in any order,
+     * holding only the reachable entries while they are read.
+     */
+    public static class Builder {
+        private int n;
+        private int m;
+        private int size;
+        private int[] entryPatrols;
+        private int[] entrySystems;
+        private int[] entryTimes;
+
+        /**
+         * Constructor for Builder.
+         *
+         * @param n the number of patrols
+         * @param m the number of systems
+         */
+        public Builder(int n, int m) {
+            this.n = n;
+            this.m = m;
+            this.entryPatrols = new int[16];
+            this.entrySystems = new int[16];
+            this.entryTimes = new int[16];
+        }
+
+        /**
+         * This method adds a reachable patrol/system pair.
+         *
+         * @param patrol the index of the patrol
+         * @param system the index of the system
+         * @param time the time the patrol takes to handle the system
+         */
+        public void add(int patrol, int system, int time) {
+            if (size == entryPatrols.length) {
+                entryPatrols = Arrays.copyOf(entryPatrols, size * 2);
+                entrySystems = Arrays.copyOf(entrySystems, size * 2);
+                entryTimes = Arrays.copyOf(entryTimes, size * 2);
+            }
+            entryPatrols[size] = patrol;
+            entrySystems[size] = system;
+            entryTimes[size] = time;
+            size++;
+        }
+
+        /**
+         * This method returns the first system no patrol can reach.
+         *
+         * @return the index of an unreachable system, or -1 if every system is reachable
+         */
+        public int findUnreachableSystem() {
+            boolean[] reachable = new boolean[m];
+            for (int k = 0; k < size; k++) {
+                reachable[entrySystems[k]] = true;
+            }
+            for (int system = 0; system < m; system++) {
+                if (!reachable[system]) {
+                    return system;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * This method sorts the entries by system, then by patrol, into a SparseMatrix.
+         *
+         * @return the sparse matrix
+         */
+        public SparseMatrix build() {
+            int[] systemStart = new int[m + 1];
+            for (int k = 0; k < size; k++) {
+                systemStart[entrySystems[k] + 1]++;
+            }
+            for (int system = 0; system < m; system++) {
+                systemStart[system + 1] += systemStart[system];
+            }
+
+            // Counting sort by system; entries of each patrol are added in patrol order by the parser,
+            // but any order is accepted, so each column is sorted afterwards
+            int[] next = Arrays.copyOf(systemStart, m);
+            int[] patrols = new int[size];
+            int[] times = new int[size];
+            for (int k = 0; k < size; k++) {
+                int slot = next[entrySystems[k]]++;
+                patrols[slot] = entryPatrols[k];
+                times[slot] = entryTimes[k];
+            }
+            for (int system = 0; system < m; system++) {
+                sortColumn(patrols, times, systemStart[system], systemStart[system + 1]);
+            }
+
+            return new SparseMatrix(n, m, systemStart, patrols, times);
+        }
+
+        private static void sortColumn(int[] patrols, int[] times, int from, int to) {
+            for (int i = from + 1; i < to; i++) {
+                int patrol = patrols[i];
+                int time = times[i];
+                int j = i - 1;
+                while (j >= from && patrols[j] > patrol) {
+                    patrols[j + 1] = patrols[j];
+                    times[j + 1] = times[j];
+                    j--;
+                }
+                patrols[j + 1] = patrol;
+                times[j + 1] = time;
+            }
+        }
+    }
+}
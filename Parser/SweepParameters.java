@@ -0,0 +1,127 @@
+package Parser;
+
+/**
+ * This class represents the configuration of a parameter sweep.
+ *
+ * The SweepParameters class holds the instance to be solved, parsed only once,
+ * together with the grid of values to try for each rate and population parameter
+ * and the number of replicas to run for every combination.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class SweepParameters {
+    private SimulationParameters base;
+    private int[] muValues;
+    private int[] rhoValues;
+    private int[] deltaValues;
+    private int[] vValues;
+    private int[] vMaxValues;
+    private int replicas;
+    private long seed;
+    private float pruneRatio;
+
+    /**
+     * Constructor for SweepParameters.
+     * Every grid starts as the single value read from the instance, one replica is run per cell
+     * and cells reaching less than 75% of the leading cell's comfort are pruned.
+     *
+     * @param base the parameters and matrix of the instance to be swept
+     */
+    public SweepParameters(SimulationParameters base) {
+        this.base = base;
+        this.muValues = new int[] { base.getMu() };
+        this.rhoValues = new int[] { base.getRho() };
+        this.deltaValues = new int[] { base.getDelta() };
+        this.vValues = new int[] { base.getV() };
+        this.vMaxValues = new int[] { base.getVMax() };
+        this.replicas = 1;
+        this.seed = System.nanoTime();
+        this.pruneRatio = 0.75f;
+    }
+
+    public SimulationParameters getBase() {
+        return base;
+    }
+
+    public int[] getMuValues() {
+        return muValues;
+    }
+
+    public void setMuValues(int[] muValues) {
+        this.muValues = muValues;
+    }
+
+    public int[] getRhoValues() {
+        return rhoValues;
+    }
+
+    public void setRhoValues(int[] rhoValues) {
+        this.rhoValues = rhoValues;
+    }
+
+    public int[] getDeltaValues() {
+        return deltaValues;
+    }
+
+    public void setDeltaValues(int[] deltaValues) {
+        this.deltaValues = deltaValues;
+    }
+
+    public int[] getVValues() {
+        return vValues;
+    }
+
+    public void setVValues(int[] vValues) {
+        this.vValues = vValues;
+    }
+
+    public int[] getVMaxValues() {
+        return vMaxValues;
+    }
+
+    public void setVMaxValues(int[] vMaxValues) {
+        this.vMaxValues = vMaxValues;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public float getPruneRatio() {
+        return pruneRatio;
+    }
+
+    public void setPruneRatio(float pruneRatio) {
+        this.pruneRatio = pruneRatio;
+    }
+
+    /**
+     * This method builds the parameters of a single cell of the sweep.
+     * The matrix of the base instance, dense or sparse, is shared, not copied.
+     *
+     * @param mu the death parameter of the cell
+     * @param rho the reproduction parameter of the cell
+     * @param delta the mutation parameter of the cell
+     * @param v the initial population of the cell
+     * @param vMax the maximum population of the cell
+     * @return the SimulationParameters of the cell
+     */
+    public SimulationParameters createCell(int mu, int rho, int delta, int v, int vMax) {
+        SimulationParameters cell = new SimulationParameters(base.getN(), base.getM(), base.getTau(), v, vMax, mu, rho, delta, base.getMatrix());
+        cell.setSparseMatrix(base.getSparseMatrix());
+        return cell;
+    }
+}
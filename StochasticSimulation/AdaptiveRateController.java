@@ -0,0 +1,102 @@
+package StochasticSimulation;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an online controller of the rates of the evolution events.
+ *
+ * The AdaptiveRateController class keeps a scale factor for the time parameter of each
+ * controlled event (mu, rho or delta). Every time an event is executed its outcome is
+ * recorded as a success or a failure, and after each window of executions the scale is
+ * adjusted following the 1/5th success rule: an operator succeeding more than one time
+ * in five becomes more frequent, one succeeding less becomes rarer. Scales are kept
+ * within user-set bounds.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class AdaptiveRateController {
+    /**
+     * The success ratio the controller steers every operator towards.
+     */
+    private static final float TARGET_SUCCESS_RATIO = 0.2f;
+    /**
+     * The factor applied to a scale after each window.
+     */
+    private static final float ADJUSTMENT = 0.85f;
+    /**
+     * The number of executions of an operator between adjustments.
+     */
+    private static final int WINDOW = 10;
+
+    private float minScale;
+    private float maxScale;
+    private int topK;
+    private float[] scales;
+    private int[] trials;
+    private int[] successes;
+
+    /**
+     * Constructor for AdaptiveRateController.
+     * Every operator starts with a scale of 1, that is, with the rate read from the input.
+     *
+     * @param operators the number of controlled operators
+     * @param topK the number of best individuals a child must enter to count as a success
+     * @param minScale the lower bound of the scales
+     * @param maxScale the upper bound of the scales
+     */
+    public AdaptiveRateController(int operators, int topK, float minScale, float maxScale) {
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.topK = topK;
+        this.scales = new float[operators];
+        this.trials = new int[operators];
+        this.successes = new int[operators];
+        Arrays.fill(scales, 1.0f);
+    }
+
+    /**
+     * This method returns the scale to apply to the time parameter of an operator.
+     * A scale below 1 makes the operator more frequent, a scale above 1 rarer.
+     *
+     * @param operator the index of the operator
+     * @return the current scale of the operator
+     */
+    public float getScale(int operator) {
+        return scales[operator];
+    }
+
+    /**
+     * This method returns the number of best individuals a child must enter to count as a success.
+     *
+     * @return the top K
+     */
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * This method records the outcome of an execution of an operator and, at the end of a window,
+     * rescales the operator according to its success ratio in that window.
+     *
+     * @param operator the index of the operator
+     * @param success whether the execution was productive
+     */
+    public void record(int operator, boolean success) {
+        trials[operator]++;
+        if (success) {
+            successes[operator]++;
+        }
+
+        if (trials[operator] == WINDOW) {
+            float ratio = (float) successes[operator] / WINDOW;
+            if (ratio > TARGET_SUCCESS_RATIO) {
+                scales[operator] = Math.max(minScale, scales[operator] * ADJUSTMENT);
+            } else if (ratio < TARGET_SUCCESS_RATIO) {
+                scales[operator] = Math.min(maxScale, scales[operator] / ADJUSTMENT);
+            }
+            trials[operator] = 0;
+            successes[operator] = 0;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package StochasticSimulation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a policy deciding which new individuals enter the population.
+ *
+ * The AdmissionPolicy class is consulted by Population.addIndividual before an individual is
+ * inserted, so that individuals that cannot matter never pay for the insertion, the rescan of the
+ * top distributions and a later epidemic. Any combination of three rules can be enabled:
+ *
+ * - threshold: an individual worse than the k-th best of the population is rejected;
+ * - no duplicates: an individual with the same distribution as one already in the population is rejected;
+ * - replace worst: once the population has reached its maximum size, an individual is only admitted
+ *   if it is better than the worst one, which is removed to make room for it. The population then
+ *   never grows past its maximum size, and epidemics no longer happen.
+ *
+ * The policy counts the individuals it admits and rejects.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class AdmissionPolicy {
+    /**
+     * The outcome of the admission of an individual.
+     */
+    public enum Decision {
+        ADMIT, REPLACE_WORST, REJECT
+    }
+
+    private int thresholdRank;
+    private boolean rejectingDuplicates;
+    private boolean replacingWorst;
+    private long admittedCount;
+    private long rejectedCount;
+
+    /**
+     * Constructor for AdmissionPolicy.
+     *
+     * @param thresholdRank the rank k of the individual a new one must not be worse than, or 0 for no threshold
+     * @param rejectingDuplicates whether individuals already in the population are rejected
+     * @param replacingWorst whether a full population admits an individual only in place of its worst one
+     */
+    public AdmissionPolicy(int thresholdRank, boolean rejectingDuplicates, boolean replacingWorst) {
+        this.thresholdRank = thresholdRank;
+        this.rejectingDuplicates = rejectingDuplicates;
+        this.replacingWorst = replacingWorst;
+    }
+
+    /**
+     * This method decides whether an individual enters the population, and counts the decision.
+     *
+     * @param individual the new individual
+     * @param individuals the individuals of the population, sorted best first
+     * @param size the size of the population, including individuals not yet merged into the list
+     * @param maxSize the maximum size of the population
+     * @return whether the individual is admitted, admitted in place of the worst one, or rejected
+     */
+    public Decision decide(Individual individual, List<Individual> individuals, int size, int maxSize) {
+        float comfort = individual.getComfortLevel();
+        Decision decision = Decision.ADMIT;
+        if (thresholdRank > 0 && individuals.size() >= thresholdRank && comfort < individuals.get(thresholdRank - 1).getComfortLevel()) {
+            decision = Decision.REJECT;
+        } else if (rejectingDuplicates && containsDuplicate(individual, individuals)) {
+            decision = Decision.REJECT;
+        } else if (replacingWorst && size >= maxSize && !individuals.isEmpty()) {
+            boolean betterThanWorst = comfort > individuals.get(individuals.size() - 1).getComfortLevel();
+            decision = betterThanWorst ? Decision.REPLACE_WORST : Decision.REJECT;
+        }
+
+        if (decision == Decision.REJECT) {
+            rejectedCount++;
+        } else {
+            admittedCount++;
+        }
+        return decision;
+    }
+
+    /**
+     * This method looks for an individual with the same distribution among those with the same comfort
+     * level. Canonical fingerprints, kept on the individuals, are compared first, so the order of the
+     * systems within a patrol does not matter, and a match is confirmed by comparing the patrol of every
+     * system, so two distributions that only share a fingerprint are not taken for each other.
+     *
+     * @param individual the new individual
+     * @param individuals the individuals of the population, sorted best first
+     * @return true if the distribution is already in the population
+     */
+    private static boolean containsDuplicate(Individual individual, List<Individual> individuals) {
+        int index = Collections.binarySearch(individuals, individual);
+        if (index < 0) {
+            return false;
+        }
+
+        float comfort = individual.getComfortLevel();
+        long fingerprint = individual.getFingerprint();
+        for (int i = index; i >= 0 && individuals.get(i).getComfortLevel() == comfort; i--) {
+            if (individuals.get(i).getFingerprint() == fingerprint && isSameDistribution(individual, individuals.get(i))) {
+                return true;
+            }
+        }
+        for (int i = index + 1; i < individuals.size() && individuals.get(i).getComfortLevel() == comfort; i++) {
+            if (individuals.get(i).getFingerprint() == fingerprint && isSameDistribution(individual, individuals.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method checks whether two individuals assign every system to the same patrol.
+     *
+     * @param first an individual
+     * @param second another individual on the same instance
+     * @return true if their distributions are equal
+     */
+    private static boolean isSameDistribution(Individual first, Individual second) {
+        int[] firstPatrols = new int[first.getNumSystems()];
+        int[] secondPatrols = new int[second.getNumSystems()];
+        first.fillPatrolOfSystem(firstPatrols);
+        second.fillPatrolOfSystem(secondPatrols);
+        return Arrays.equals(firstPatrols, secondPatrols);
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+}
@@ -0,0 +1,224 @@
+package StochasticSimulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents an individual whose distribution and metrics live in an IndividualArena.
+ *
+ * The ArenaIndividual class is a handle on a slot of the arena: it holds no distribution of its own,
+ * and getDistribution builds a fresh list from the packed patrol indices on every call, listing the
+ * systems of each patrol in increasing order. Children and random individuals are written straight
+ * into new slots. A slot is given back to the arena by the Population once the individual is neither
+ * in the population nor kept as the best ever or one of the all-time top distributions.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ArenaIndividual extends Individual {
+    private IndividualArena arena;
+    private int slot;
+    private boolean inPopulation;
+
+    /**
+     * Constructor for ArenaIndividual.
+     * Initializes the individual in a new slot of the arena with a random distribution.
+     *
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     * @param arena the arena holding the distributions of the population
+     * @param random the Random object used for randomizing the distribution
+     */
+    public ArenaIndividual(int[][] matrix, SparseMatrix sparseMatrix, IndividualArena arena, Random random) {
+        super(matrix, sparseMatrix);
+        this.arena = arena;
+        this.slot = arena.allocate();
+        randomizeSlot(random);
+        computeMetrics();
+    }
+
+    /**
+     * Constructor for ArenaIndividual.
+     * Initializes an individual in a new slot of the arena of another one, sharing its matrix and tmin.
+     *
+     * @param other the individual whose matrix, tmin and arena are shared
+     */
+    private ArenaIndividual(ArenaIndividual other) {
+        super(other);
+        this.arena = other.arena;
+        this.slot = arena.allocate();
+    }
+
+    /**
+     * This method randomly assigns systems to patrols in the slot of the individual.
+     *
+     * @param random the Random object used for randomizing the distribution
+     */
+    private void randomizeSlot(Random random) {
+        int numSystems = arena.getNumSystems();
+        for (int system = 0; system < numSystems; system++) {
+            arena.setPatrol(slot, system, randomPatrolFor(system, -1, random));
+        }
+    }
+
+    @Override
+    public Individual createChild(List<List<Integer>> distribution) {
+        ArenaIndividual child = new ArenaIndividual(this);
+        for (int patrol = 0; patrol < distribution.size(); patrol++) {
+            for (int system : distribution.get(patrol)) {
+                arena.setPatrol(child.slot, system, patrol);
+            }
+        }
+        child.computeMetrics();
+        return child;
+    }
+
+    /**
+     * The metrics of an arena individual are never looked up in the fitness cache, so the change of
+     * the fingerprint is not needed.
+     */
+    @Override
+    public Individual createChild(List<List<Integer>> distribution, long fingerprintChange) {
+        return createChild(distribution);
+    }
+
+    @Override
+    public Individual createChild(int[] patrolOfSystem, float maxPatrolTime) {
+        ArenaIndividual child = new ArenaIndividual(this);
+        for (int system = 0; system < patrolOfSystem.length; system++) {
+            arena.setPatrol(child.slot, system, patrolOfSystem[system]);
+        }
+        child.applyPatrolTime(maxPatrolTime);
+        return child;
+    }
+
+    @Override
+    public void fillPatrolOfSystem(int[] patrolOfSystem) {
+        for (int system = 0; system < patrolOfSystem.length; system++) {
+            patrolOfSystem[system] = arena.getPatrol(slot, system);
+        }
+    }
+
+    @Override
+    public Individual createRandom(Random random) {
+        ArenaIndividual individual = new ArenaIndividual(this);
+        individual.randomizeSlot(random);
+        individual.computeMetrics();
+        return individual;
+    }
+
+    @Override
+    public List<Individual> createRandomBatch(Random random, int count) {
+        List<Individual> individuals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            individuals.add(createRandom(random));
+        }
+        return individuals;
+    }
+
+    /**
+     * The metrics are computed from the packed indices, which costs as much as a fingerprint of the
+     * distribution, so the fitness cache is never consulted.
+     */
+    @Override
+    protected void evaluate() {
+        computeMetrics();
+    }
+
+    @Override
+    public void computeMetrics() {
+        float[] loads = arena.computeLoads(slot, this);
+
+        float maxPatrolTime = 0;
+        for (float time : loads) {
+            if (time > maxPatrolTime) {
+                maxPatrolTime = time;
+            }
+        }
+        applyPatrolTime(maxPatrolTime);
+    }
+
+    /**
+     * The slot holds the patrol of every system and not the systems of every patrol, so the loads
+     * are computed again from the packed indices as soon as one of the changed pairs is used.
+     */
+    @Override
+    void applyCostChanges(CostChanges changes) {
+        this.tmin = changes.getTmin();
+        for (int i = 0; i < changes.getUpdateCount(); i++) {
+            if (arena.getPatrol(slot, changes.getUpdateSystem(i)) == changes.getUpdatePatrol(i)) {
+                computeMetrics();
+                return;
+            }
+        }
+        applyPatrolTime(getOptimalPatrolTime());
+    }
+
+    @Override
+    protected void applyPatrolTime(float maxPatrolTime) {
+        float comfortLevel = tmin / maxPatrolTime;
+        if (comfortLevel > 1.0) {
+            comfortLevel = 1.0f;
+        }
+        arena.setMetrics(slot, maxPatrolTime, comfortLevel);
+    }
+
+    @Override
+    public float getComfortLevel() {
+        return arena.getComfortLevel(slot);
+    }
+
+    @Override
+    public float getOptimalPatrolTime() {
+        return arena.getPatrolTime(slot);
+    }
+
+    @Override
+    public List<List<Integer>> getDistribution() {
+        int numPatrols = arena.getNumPatrols();
+        int numSystems = arena.getNumSystems();
+        List<List<Integer>> distribution = new ArrayList<>(numPatrols);
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            distribution.add(new ArrayList<>());
+        }
+        for (int system = 0; system < numSystems; system++) {
+            distribution.get(arena.getPatrol(slot, system)).add(system);
+        }
+        return distribution;
+    }
+
+    @Override
+    public int compareTo(Individual other) {
+        return Float.compare(other.getComfortLevel(), getComfortLevel());
+    }
+
+    @Override
+    public String toString() {
+        return SimulationObserver.formatDistribution(getDistribution());
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    boolean isInPopulation() {
+        return inPopulation;
+    }
+
+    void setInPopulation(boolean inPopulation) {
+        this.inPopulation = inPopulation;
+    }
+
+    /**
+     * This method gives the slot of the individual back to the arena; the individual must not be used afterwards.
+     */
+    void release() {
+        if (slot >= 0) {
+            arena.free(slot);
+            slot = -1;
+        }
+    }
+}
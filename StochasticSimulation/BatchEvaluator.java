@@ -0,0 +1,210 @@
+package StochasticSimulation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * This class represents an evaluator of blocks of individuals sharing a dense matrix.
+ *
+ * The BatchEvaluator class lays a block of individuals out in structure-of-arrays form,
+ * the patrol of every system for every individual of the block, and computes all the patrol
+ * loads and the maximum patrol time of each individual in one pass. This scalar version is
+ * always available; when the jdk.incubator.vector module is present and the source root vector/
+ * has been compiled, forMatrix returns a VectorBatchEvaluator that processes several individuals
+ * per instruction.
+ *
+ * The tile is sized so that the patrols of its systems and its loads fit in a few hundred
+ * kilobytes, from 64 individuals on small instances down to 8 on the largest ones, and the
+ * scratch arrays are allocated once per evaluator. The flattened matrix is an extra n x m copy
+ * held as long as the matrix is, which is why batch evaluation is only used with --batch-eval:
+ * on the instances of SIM filling a tile costs about as much as evaluating its individuals one
+ * by one, as recorded in Harness/evaluator_benchmark.txt.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class BatchEvaluator {
+    /**
+     * The largest number of individuals evaluated together.
+     */
+    private static final int MAX_TILE_SIZE = 64;
+    /**
+     * The smallest number of individuals evaluated together, one 256-bit vector of ints.
+     */
+    private static final int MIN_TILE_SIZE = 8;
+    /**
+     * The number of ints the patrols and the loads of a tile should take, 256 KB, so that they stay in cache.
+     */
+    private static final int TILE_INTS = 64 * 1024;
+    /**
+     * The evaluators already built, one per matrix, so that a matrix is only flattened once.
+     */
+    private static final Map<int[][], BatchEvaluator> EVALUATORS = new WeakHashMap<>();
+
+    protected int numPatrols;
+    protected int numSystems;
+    /**
+     * The matrix flattened system by system: the time of patrol p on system s is at s * numPatrols + p,
+     * so that the times of all the patrols a system may be assigned to are close together.
+     */
+    protected int[] times;
+    /**
+     * The number of individuals evaluated together on this matrix, a multiple of MIN_TILE_SIZE.
+     */
+    protected int tileSize;
+    private int[] assignments;
+    private int[] loads;
+    private int[] maxTimes;
+
+    /**
+     * Constructor for BatchEvaluator.
+     *
+     * @param matrix the dense matrix representing patrol times
+     */
+    protected BatchEvaluator(int[][] matrix) {
+        this.numPatrols = matrix.length;
+        this.numSystems = matrix[0].length;
+        this.times = new int[numPatrols * numSystems];
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            for (int system = 0; system < numSystems; system++) {
+                times[system * numPatrols + patrol] = matrix[patrol][system];
+            }
+        }
+
+        long perIndividual = (long) numSystems + numPatrols;
+        int fitting = (int) Math.min(MAX_TILE_SIZE, TILE_INTS / perIndividual);
+        this.tileSize = Math.max(MIN_TILE_SIZE, fitting / MIN_TILE_SIZE * MIN_TILE_SIZE);
+    }
+
+    /**
+     * This method returns the evaluator of a matrix, using the Vector API when its module is present.
+     *
+     * @param matrix the dense matrix representing patrol times
+     * @return the evaluator of the matrix, or null if the matrix is too large to be flattened
+     */
+    public static synchronized BatchEvaluator forMatrix(int[][] matrix) {
+        if ((long) matrix.length * matrix[0].length > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        BatchEvaluator evaluator = EVALUATORS.get(matrix);
+        if (evaluator == null) {
+            evaluator = isVectorApiPresent() ? createVectorEvaluator(matrix) : null;
+            if (evaluator == null) {
+                evaluator = new BatchEvaluator(matrix);
+            }
+            EVALUATORS.put(matrix, evaluator);
+        }
+        return evaluator;
+    }
+
+    /**
+     * This method drops the evaluator of a matrix whose times have changed, so that the next call to
+     * forMatrix flattens it again.
+     *
+     * @param matrix the dense matrix representing patrol times
+     */
+    public static synchronized void invalidate(int[][] matrix) {
+        EVALUATORS.remove(matrix);
+    }
+
+    /**
+     * This method builds a scalar evaluator of a matrix, whether or not the Vector API is present.
+     *
+     * @param matrix the dense matrix representing patrol times
+     * @return a new scalar evaluator
+     */
+    public static BatchEvaluator createScalar(int[][] matrix) {
+        return new BatchEvaluator(matrix);
+    }
+
+    /**
+     * This method tells whether the jdk.incubator.vector module has been added to the boot layer.
+     *
+     * @return true if the Vector API can be used
+     */
+    public static boolean isVectorApiPresent() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * This method loads the vectorized evaluator by name, so that this class never links against the
+     * incubator module when it is absent.
+     *
+     * @param matrix the dense matrix representing patrol times
+     * @return the vectorized evaluator, or null if it cannot be loaded
+     */
+    private static BatchEvaluator createVectorEvaluator(int[][] matrix) {
+        try {
+            return (BatchEvaluator) Class.forName("StochasticSimulation.VectorBatchEvaluator")
+                    .getDeclaredConstructor(int[][].class)
+                    .newInstance((Object) matrix);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method evaluates a block of individuals and sets their metrics, one tile at a time. The
+     * scratch arrays are shared by every caller of the evaluator, so evaluations of the same matrix
+     * from several threads take turns.
+     *
+     * @param individuals the individuals to evaluate, all on the matrix of this evaluator
+     */
+    public synchronized void evaluate(List<Individual> individuals) {
+        if (assignments == null) {
+            assignments = new int[numSystems * tileSize];
+            loads = new int[numPatrols * tileSize];
+            maxTimes = new int[tileSize];
+        }
+
+        for (int first = 0; first < individuals.size(); first += this.tileSize) {
+            int tileSize = Math.min(this.tileSize, individuals.size() - first);
+
+            // Structure of arrays: the patrol of system s in individual b of the tile is at s * tileSize + b
+            for (int b = 0; b < tileSize; b++) {
+                List<List<Integer>> distribution = individuals.get(first + b).getDistribution();
+                for (int patrol = 0; patrol < distribution.size(); patrol++) {
+                    for (int system : distribution.get(patrol)) {
+                        assignments[system * tileSize + b] = patrol;
+                    }
+                }
+            }
+
+            Arrays.fill(loads, 0, numPatrols * tileSize, 0);
+            Arrays.fill(maxTimes, 0);
+            computeMaxTimes(assignments, loads, maxTimes, tileSize);
+            for (int b = 0; b < tileSize; b++) {
+                individuals.get(first + b).applyPatrolTime(maxTimes[b]);
+            }
+        }
+    }
+
+    /**
+     * This method computes the maximum patrol time of every individual of a tile.
+     *
+     * @param assignments the patrol of each system for each individual, in structure-of-arrays form
+     * @param loads the zeroed loads of each patrol for each individual, at patrol * tileSize + b
+     * @param maxTimes the zeroed array receiving the maximum patrol time of each individual
+     * @param tileSize the number of individuals in the tile
+     */
+    protected void computeMaxTimes(int[] assignments, int[] loads, int[] maxTimes, int tileSize) {
+        for (int system = 0; system < numSystems; system++) {
+            int row = system * tileSize;
+            int column = system * numPatrols;
+            for (int b = 0; b < tileSize; b++) {
+                int patrol = assignments[row + b];
+                loads[patrol * tileSize + b] += times[column + patrol];
+            }
+        }
+
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            int row = patrol * tileSize;
+            for (int b = 0; b < tileSize; b++) {
+                maxTimes[b] = Math.max(maxTimes[b], loads[row + b]);
+            }
+        }
+    }
+}
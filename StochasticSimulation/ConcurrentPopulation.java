@@ -0,0 +1,332 @@
+package StochasticSimulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents a population shared by several worker threads.
+ *
+ * The ConcurrentPopulation class splits the individuals into stripes, each one a list sorted by
+ * comfort level and guarded by its own lock, so that workers inserting into or removing from
+ * different stripes never wait for each other. A new individual goes to a random stripe, and a
+ * removal by index picks the stripe from the index, which keeps the stripes balanced and the
+ * removals close to uniform. The best individual is the best of the stripe heads, and the best
+ * ever individual is kept in an atomic reference.
+ *
+ * Regular events run while holding the read side of getLock(). Epidemics, restarts and observations,
+ * which need the whole population at once through getIndividuals and setIndividuals, hold the write
+ * side, during which the stripes cannot change.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ConcurrentPopulation extends Population {
+    private Stripe[] stripes;
+    private AtomicInteger size;
+    private AtomicReference<Individual> bestEverIndividual;
+    private volatile List<Individual> snapshot;
+    private ReentrantReadWriteLock lock;
+    private List<Individual> allTimeTopDistributions;
+    private Set<String> allTimeTopDistributionsSet;
+    private volatile float allTimeTopThreshold;
+
+    /**
+     * A sorted part of the population, guarded by its own monitor.
+     */
+    private static class Stripe {
+        private List<Individual> individuals = new ArrayList<>();
+        private volatile Individual head;
+    }
+
+    /**
+     * Constructor for ConcurrentPopulation.
+     *
+     * @param initialSize the number of random individuals to start with
+     * @param maxPopulationSize the population size above which an epidemic happens
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     * @param batchEvaluated whether the random individuals on a dense matrix are evaluated by a BatchEvaluator
+     * @param random the Random object used for the initial individuals
+     * @param numStripes the number of stripes, typically a few per worker thread
+     */
+    public ConcurrentPopulation(int initialSize, int maxPopulationSize, int[][] matrix, SparseMatrix sparseMatrix,
+            boolean batchEvaluated, Random random, int numStripes) {
+        super(maxPopulationSize);
+        this.stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.size = new AtomicInteger();
+        this.bestEverIndividual = new AtomicReference<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.allTimeTopDistributions = new ArrayList<>();
+        this.allTimeTopDistributionsSet = new HashSet<>();
+        this.allTimeTopThreshold = Float.NEGATIVE_INFINITY;
+
+        if (initialSize > 0) {
+            Individual first = sparseMatrix != null ? new Individual(sparseMatrix, random) : new Individual(matrix, random);
+            first.setBatchEvaluated(batchEvaluated);
+            List<Individual> individuals = new ArrayList<>();
+            individuals.add(first);
+            individuals.addAll(first.createRandomBatch(random, initialSize - 1));
+            setIndividuals(individuals);
+        }
+    }
+
+    /**
+     * This method returns the lock coordinating the regular events, on the read side, with the
+     * epidemics, restarts and observations, on the write side.
+     *
+     * @return the read-write lock of the population
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * This method returns every individual sorted by comfort level. The list is a snapshot, only
+     * consistent while holding the write side of the lock. It is only kept for reuse, until the
+     * population changes, when built under the write lock: a worker could otherwise keep a list that
+     * misses an individual added, or still holds one removed, by another worker meanwhile.
+     *
+     * @return the individuals of every stripe, best first
+     */
+    @Override
+    public List<Individual> getIndividuals() {
+        List<Individual> individuals = snapshot;
+        if (individuals == null) {
+            individuals = new ArrayList<>(size.get());
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    individuals.addAll(stripe.individuals);
+                }
+            }
+            Collections.sort(individuals);
+            if (lock.isWriteLockedByCurrentThread()) {
+                snapshot = individuals;
+            }
+        }
+        return individuals;
+    }
+
+    /**
+     * This method replaces the population, dealing the individuals round-robin among the stripes.
+     * It must be called while holding the write side of the lock.
+     *
+     * @param individuals the new individuals
+     */
+    @Override
+    public void setIndividuals(List<Individual> individuals) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.individuals.clear();
+            }
+        }
+        for (int i = 0; i < individuals.size(); i++) {
+            Stripe stripe = stripes[i % stripes.length];
+            synchronized (stripe) {
+                stripe.individuals.add(individuals.get(i));
+            }
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Collections.sort(stripe.individuals);
+                stripe.head = stripe.individuals.isEmpty() ? null : stripe.individuals.get(0);
+            }
+        }
+        size.set(individuals.size());
+        snapshot = null;
+        for (Individual individual : individuals) {
+            updateBestEver(individual);
+            updateAllTimeTop(individual);
+        }
+    }
+
+    @Override
+    public int getPopulationSize() {
+        return size.get();
+    }
+
+    @Override
+    public void addIndividual(Individual individual) {
+        Stripe stripe = stripes[ThreadLocalRandom.current().nextInt(stripes.length)];
+        synchronized (stripe) {
+            int index = Collections.binarySearch(stripe.individuals, individual);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            stripe.individuals.add(index, individual);
+            stripe.head = stripe.individuals.get(0);
+        }
+        size.incrementAndGet();
+        snapshot = null;
+        updateBestEver(individual);
+        updateAllTimeTop(individual);
+    }
+
+    /**
+     * This method removes an individual. The index selects the stripe, index modulo the number of
+     * stripes, and the position within it, so that a uniformly drawn index removes a close to
+     * uniformly drawn individual; empty stripes are skipped.
+     *
+     * @param index an index between 0 and the population size
+     */
+    @Override
+    public void removeIndividual(int index) {
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(index + i) % stripes.length];
+            synchronized (stripe) {
+                if (!stripe.individuals.isEmpty()) {
+                    stripe.individuals.remove((index / stripes.length) % stripe.individuals.size());
+                    stripe.head = stripe.individuals.isEmpty() ? null : stripe.individuals.get(0);
+                    size.decrementAndGet();
+                    snapshot = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method removes the worst individual, the worst of the stripe tails, since an index does
+     * not follow the comfort order across stripes. It is used to make room for the seeds of the
+     * population, before the workers start.
+     */
+    @Override
+    public void removeWorst() {
+        Stripe worstStripe = null;
+        Individual worst = null;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (!stripe.individuals.isEmpty()) {
+                    Individual tail = stripe.individuals.get(stripe.individuals.size() - 1);
+                    if (worst == null || tail.compareTo(worst) > 0) {
+                        worstStripe = stripe;
+                        worst = tail;
+                    }
+                }
+            }
+        }
+        if (worstStripe == null) {
+            return;
+        }
+        synchronized (worstStripe) {
+            int last = worstStripe.individuals.size() - 1;
+            if (last >= 0 && worstStripe.individuals.get(last) == worst) {
+                worstStripe.individuals.remove(last);
+                worstStripe.head = worstStripe.individuals.isEmpty() ? null : worstStripe.individuals.get(0);
+                size.decrementAndGet();
+                snapshot = null;
+            }
+        }
+    }
+
+    @Override
+    public void sortIndividuals() {
+        // Each stripe is always kept sorted
+    }
+
+    @Override
+    public Individual getBestIndividual() {
+        Individual best = null;
+        for (Stripe stripe : stripes) {
+            Individual head = stripe.head;
+            if (head != null && (best == null || head.getComfortLevel() > best.getComfortLevel())) {
+                best = head;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public Individual getBestEverIndividual() {
+        return bestEverIndividual.get();
+    }
+
+    /**
+     * This method returns the five best distinct distributions of the population. It must be called
+     * while holding the write side of the lock.
+     *
+     * @return the top distributions, best first
+     */
+    @Override
+    public List<Individual> getTopDistributions() {
+        Set<String> seenDistributions = new HashSet<>();
+        List<Individual> uniqueDistributions = new ArrayList<>();
+        for (Individual individual : getIndividuals()) {
+            if (seenDistributions.add(SimulationObserver.formatDistribution(individual.getDistribution()))) {
+                uniqueDistributions.add(individual);
+            }
+            if (uniqueDistributions.size() == 5) {
+                break;
+            }
+        }
+        return uniqueDistributions;
+    }
+
+    @Override
+    public List<Individual> getAllTimeTopDistributions() {
+        synchronized (allTimeTopDistributions) {
+            return new ArrayList<>(allTimeTopDistributions);
+        }
+    }
+
+    @Override
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        for (Individual individual : getIndividuals()) {
+            individual.setFitnessCache(fitnessCache);
+        }
+    }
+
+    /**
+     * This method makes an individual the best ever one if it is better than the current one.
+     *
+     * @param individual the new individual
+     */
+    private void updateBestEver(Individual individual) {
+        Individual current;
+        do {
+            current = bestEverIndividual.get();
+            if (current != null && individual.getComfortLevel() <= current.getComfortLevel()) {
+                return;
+            }
+        } while (!bestEverIndividual.compareAndSet(current, individual));
+    }
+
+    /**
+     * This method adds an individual to the five best distinct distributions of all time if it is
+     * better than the fifth one; the comparison with the threshold avoids taking the lock otherwise.
+     *
+     * @param individual the new individual
+     */
+    private void updateAllTimeTop(Individual individual) {
+        if (individual.getComfortLevel() <= allTimeTopThreshold) {
+            return;
+        }
+        String distributionString = SimulationObserver.formatDistribution(individual.getDistribution());
+        synchronized (allTimeTopDistributions) {
+            if (!allTimeTopDistributionsSet.add(distributionString)) {
+                return;
+            }
+            allTimeTopDistributions.add(individual);
+            Collections.sort(allTimeTopDistributions, (a, b) -> Float.compare(b.getComfortLevel(), a.getComfortLevel()));
+            if (allTimeTopDistributions.size() > 5) {
+                allTimeTopDistributions.remove(5);
+            }
+            if (allTimeTopDistributions.size() == 5) {
+                allTimeTopThreshold = allTimeTopDistributions.get(4).getComfortLevel();
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package StochasticSimulation;
+
+import StochasticSimulation.Events.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import Parser.SimulationParameters;
+
+/**
+ * This class represents a steady-state simulation run by several worker threads on one population.
+ *
+ * The ConcurrentSimulation class starts one worker per thread on a ConcurrentPopulation. Every
+ * worker repeatedly takes the best individual, picks the next event as the sequential simulation
+ * does, advances the shared simulated clock by the time of that event and executes it, building,
+ * evaluating and inserting the child concurrently with the other workers. Epidemics, restarts and
+ * observations hold the write side of the population lock, so they see a population no worker is
+ * changing; observations are reported in order by whichever worker moves the clock past them.
+ *
+ * Each worker draws from its own Random, seeded from the Random of the simulation, but the
+ * interleaving of the workers makes runs with a fixed seed non-reproducible.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ConcurrentSimulation extends Simulation {
+    /**
+     * Number of observations made by every run of the simulation.
+     */
+    private static final int OBSERVATIONS = 20;
+
+    private int threads;
+    private ConcurrentPopulation concurrentPopulation;
+    private AtomicLong clock; // Bits of the simulated time, as a double
+    private AtomicInteger events;
+    private AtomicInteger epidemics;
+    private volatile int observationCount;
+    private volatile boolean finished;
+    private volatile boolean perfect;
+    private volatile boolean extinct;
+
+    /**
+     * Constructor for ConcurrentSimulation.
+     *
+     * @param params the parameters of the simulation, including the number of worker threads
+     * @param random the Random object the workers are seeded from
+     * @param improved whether restarts are enabled
+     */
+    public ConcurrentSimulation(SimulationParameters params, Random random, boolean improved) {
+        super(params, random, improved);
+        this.threads = params.getThreads();
+        this.concurrentPopulation = (ConcurrentPopulation) population;
+    }
+
+    @Override
+    public void run() {
+        startBudget();
+        clock = new AtomicLong(Double.doubleToLongBits(0));
+        events = new AtomicInteger();
+        epidemics = new AtomicInteger();
+        observationCount = 0;
+        finished = concurrentPopulation.getPopulationSize() == 0;
+        perfect = false;
+        extinct = finished;
+        bestEverTime = 0;
+
+        RestartEvent restartEvent = createRestartEvent();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Random workerRandom = new Random(random.nextLong());
+            workers.add(pool.submit(() -> work(workerRandom, restartEvent)));
+        }
+
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException | ExecutionException e) {
+                finished = true;
+                System.out.println("Worker failed: " + e.getCause());
+            }
+        }
+        pool.shutdown();
+
+        eventCount = events.get();
+        epidemicCount = epidemics.get();
+        float currentTime = (float) Math.min(tau, Double.longBitsToDouble(clock.get()));
+        if (extinct) {
+            return;
+        }
+        if (perfect) {
+            notifyObservers(++observationCount, currentTime, eventCount, epidemicCount);
+        } else if (currentTime < tau) {
+            notifyObservers(++observationCount, stopRequested ? currentTime : tau, eventCount, epidemicCount);
+        }
+    }
+
+    /**
+     * This method is the loop of a worker, which runs until the simulated time reaches tau, the
+     * population dies out, a perfect individual is found or a stop is requested.
+     *
+     * @param random the Random object of the worker
+     * @param restartEvent the restart event shared by the workers
+     */
+    private void work(Random random, RestartEvent restartEvent) {
+        List<EvolutionEvent> workerEvents = createRegularEvents();
+        EpidemicEvent epidemicEvent = new EpidemicEvent(vMax);
+        Lock readLock = concurrentPopulation.getLock().readLock();
+        Lock writeLock = concurrentPopulation.getLock().writeLock();
+
+        while (!finished && !stopRequested) {
+            EvolutionEvent nextEvent = null;
+            float minEventTime = Float.MAX_VALUE;
+
+            readLock.lock();
+            try {
+                Individual bestIndividual = concurrentPopulation.getBestIndividual();
+                if (bestIndividual == null) {
+                    extinct = true;
+                    finished = true;
+                    return;
+                }
+                if (bestIndividual.getComfortLevel() == 1.0f) {
+                    perfect = true;
+                    finished = true;
+                    return;
+                }
+                for (EvolutionEvent event : workerEvents) {
+                    float eventTime = event.getNextEventTime(bestIndividual);
+                    if (eventTime < minEventTime) {
+                        minEventTime = eventTime;
+                        nextEvent = event;
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+
+            double now = advanceClock(minEventTime);
+            if (dueObservations(now) > observationCount) {
+                writeLock.lock();
+                try {
+                    reportObservations(now);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            if (now >= tau) {
+                finished = true;
+                return;
+            }
+
+            readLock.lock();
+            try {
+                Individual bestEver = concurrentPopulation.getBestEverIndividual();
+                nextEvent.execute(concurrentPopulation, random);
+                // Every count is taken by one worker only, so the clock is still read once per interval
+                checkBudget(events.incrementAndGet());
+                if (concurrentPopulation.getBestEverIndividual() != bestEver) {
+                    bestEverTime = (float) now;
+                }
+            } finally {
+                readLock.unlock();
+            }
+
+            boolean restartDue = improved && restartEvent.recordEvents(concurrentPopulation, 1);
+            if (concurrentPopulation.getPopulationSize() > vMax || restartDue) {
+                writeLock.lock();
+                try {
+                    // Another worker may have already handled it while this one waited for the lock
+                    if (concurrentPopulation.getPopulationSize() > vMax) {
+                        epidemicEvent.execute(concurrentPopulation, random);
+                        epidemics.incrementAndGet();
+                    }
+                    if (improved && restartEvent.isDue()) {
+                        restartEvent.execute(concurrentPopulation, random);
+                        restartCount = restartEvent.getRestartCount();
+                        restartNanos = restartEvent.getRestartNanos();
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method adds a time to the shared simulated clock.
+     *
+     * @param time the time to add
+     * @return the simulated time after the addition
+     */
+    private double advanceClock(float time) {
+        long current;
+        double next;
+        do {
+            current = clock.get();
+            next = Double.longBitsToDouble(current) + time;
+        } while (!clock.compareAndSet(current, Double.doubleToLongBits(next)));
+        return next;
+    }
+
+    /**
+     * This method returns the number of observations that must have been reported once the clock
+     * has reached a time: observation k is reported as soon as the clock goes past k * tau / 20.
+     *
+     * @param now the simulated time
+     * @return the number of observations due
+     */
+    private int dueObservations(double now) {
+        double observationInterval = tau / OBSERVATIONS;
+        return (int) Math.min(OBSERVATIONS, Math.ceil(now / observationInterval) - 1);
+    }
+
+    /**
+     * This method reports, in order, every observation due and not yet reported. It must be called
+     * while holding the write side of the population lock.
+     *
+     * @param now the simulated time
+     */
+    private void reportObservations(double now) {
+        float observationInterval = tau / OBSERVATIONS;
+        int due = dueObservations(now);
+        while (observationCount < due) {
+            observationCount++;
+            notifyObservers(observationCount, observationCount * observationInterval, events.get(), epidemics.get());
+        }
+    }
+
+    /**
+     * The workers change the population concurrently, so the matrix cannot be changed while they run.
+     */
+    @Override
+    public void applyCostUpdates(Collection<CostUpdate> updates) {
+        throw new IllegalStateException("Cost updates are not supported with several worker threads.");
+    }
+
+    @Override
+    public void scheduleCostUpdate(float instant, CostUpdate update) {
+        throw new IllegalStateException("Cost updates are not supported with several worker threads.");
+    }
+
+    @Override
+    public int getEventCount() {
+        return events == null ? eventCount : events.get();
+    }
+
+    @Override
+    public int getEpidemicCount() {
+        return epidemics == null ? epidemicCount : epidemics.get();
+    }
+}
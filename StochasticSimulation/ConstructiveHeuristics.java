@@ -0,0 +1,180 @@
+package StochasticSimulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents a set of constructive heuristics used to warm-start the initial population.
+ *
+ * The ConstructiveHeuristics class builds distributions directly, instead of drawing them at random,
+ * treating the patrols as unrelated machines and the systems as jobs:
+ *
+ * - greedy min-cost assigns every system to the patrol that handles it the fastest;
+ * - LPT takes the systems from the longest to the shortest, by their fastest time, and assigns each
+ *   one to the patrol that would finish it the earliest given the load assigned so far;
+ * - randomized LPT perturbs the order of the systems and picks a random patrol among those that
+ *   finish within a margin of the earliest one, so that every call gives a different distribution.
+ *
+ * Every heuristic only considers the patrols allowed to reach each system, so with a sparse matrix a
+ * heuristic costs O(nnz + m log m), and O(n m + m log m) with a dense one, n being the number of
+ * patrols, m the number of systems and nnz the number of allowed pairs. The individuals are built
+ * from their known maximum load, without being evaluated again.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ConstructiveHeuristics {
+    /**
+     * Relative margin, over the earliest finish, within which randomized LPT picks a patrol.
+     */
+    private static final float MARGIN = 0.2f;
+
+    private Individual template;
+    private int[][] matrix;
+    private SparseMatrix sparseMatrix;
+    private int numPatrols;
+    private int numSystems;
+    private int[] minTimes;
+
+    /**
+     * Constructor for ConstructiveHeuristics.
+     *
+     * @param template an individual of the population, whose kind, matrix and tmin the new individuals share
+     */
+    public ConstructiveHeuristics(Individual template) {
+        this.template = template;
+        this.matrix = template.getMatrix();
+        this.sparseMatrix = template.getSparseMatrix();
+        this.numPatrols = template.getNumPatrols();
+        this.numSystems = template.getNumSystems();
+        this.minTimes = new int[numSystems];
+        for (int system = 0; system < numSystems; system++) {
+            int minTime = Integer.MAX_VALUE;
+            for (int k = 0; k < candidateCount(system); k++) {
+                minTime = Math.min(minTime, candidateTime(system, k));
+            }
+            minTimes[system] = minTime;
+        }
+    }
+
+    /**
+     * This method creates the individuals of a warm start: one greedy min-cost, one LPT and
+     * randomized LPT ones for the rest.
+     *
+     * @param count the number of individuals to create
+     * @param random the Random object used by the randomized heuristic
+     * @return the new individuals
+     */
+    public List<Individual> createSeeds(int count, Random random) {
+        List<Individual> seeds = new ArrayList<>(count);
+        if (count > 0) {
+            seeds.add(greedyMinCost());
+        }
+        if (count > 1) {
+            seeds.add(longestProcessingTime(null));
+        }
+        while (seeds.size() < count) {
+            seeds.add(longestProcessingTime(random));
+        }
+        return seeds;
+    }
+
+    /**
+     * This method assigns every system to the patrol that handles it the fastest.
+     *
+     * @return the new individual
+     */
+    public Individual greedyMinCost() {
+        int[] patrolOfSystem = new int[numSystems];
+        float[] loads = new float[numPatrols];
+        for (int system = 0; system < numSystems; system++) {
+            int best = 0;
+            for (int k = 1; k < candidateCount(system); k++) {
+                if (candidateTime(system, k) < candidateTime(system, best)) {
+                    best = k;
+                }
+            }
+            patrolOfSystem[system] = candidatePatrol(system, best);
+            loads[patrolOfSystem[system]] += candidateTime(system, best);
+        }
+        return template.createChild(patrolOfSystem, max(loads));
+    }
+
+    /**
+     * This method assigns the systems, from the longest to the shortest, each one to the patrol that
+     * finishes it the earliest. With a Random object the order is perturbed and the patrol is drawn
+     * among those finishing within MARGIN of the earliest.
+     *
+     * @param random the Random object used to randomize the heuristic, or null for plain LPT
+     * @return the new individual
+     */
+    public Individual longestProcessingTime(Random random) {
+        // Sorting the keys, time in the upper half and system in the lower one, avoids boxing the systems;
+        // the bits of a non-negative float sort as the float does
+        long[] order = new long[numSystems];
+        for (int system = 0; system < numSystems; system++) {
+            long key = minTimes[system];
+            if (random != null) {
+                key = Float.floatToIntBits(minTimes[system] * (1 + MARGIN * random.nextFloat()));
+            }
+            order[system] = (key << 32) | system;
+        }
+        Arrays.sort(order);
+
+        int[] patrolOfSystem = new int[numSystems];
+        float[] loads = new float[numPatrols];
+        for (int i = numSystems - 1; i >= 0; i--) {
+            int system = (int) order[i];
+            int candidates = candidateCount(system);
+
+            int best = 0;
+            float bestFinish = Float.MAX_VALUE;
+            for (int k = 0; k < candidates; k++) {
+                float finish = loads[candidatePatrol(system, k)] + candidateTime(system, k);
+                if (finish < bestFinish) {
+                    bestFinish = finish;
+                    best = k;
+                }
+            }
+
+            if (random != null) {
+                // Reservoir sampling over the patrols within the margin, which always include the earliest
+                float limit = bestFinish * (1 + MARGIN);
+                int seen = 0;
+                for (int k = 0; k < candidates; k++) {
+                    if (loads[candidatePatrol(system, k)] + candidateTime(system, k) <= limit && random.nextInt(++seen) == 0) {
+                        best = k;
+                    }
+                }
+            }
+
+            patrolOfSystem[system] = candidatePatrol(system, best);
+            loads[patrolOfSystem[system]] += candidateTime(system, best);
+        }
+        return template.createChild(patrolOfSystem, max(loads));
+    }
+
+    private int candidateCount(int system) {
+        return sparseMatrix != null ? sparseMatrix.getAllowedCount(system) : numPatrols;
+    }
+
+    private int candidatePatrol(int system, int k) {
+        return sparseMatrix != null ? sparseMatrix.getAllowedPatrol(system, k) : k;
+    }
+
+    private int candidateTime(int system, int k) {
+        return sparseMatrix != null ? sparseMatrix.getAllowedTime(system, k) : matrix[k][system];
+    }
+
+    private static float max(float[] loads) {
+        float max = 0;
+        for (float load : loads) {
+            max = Math.max(max, load);
+        }
+        return max;
+    }
+}
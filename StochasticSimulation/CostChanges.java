@@ -0,0 +1,82 @@
+package StochasticSimulation;
+
+import java.util.List;
+
+/**
+ * This class represents a batch of cost updates once applied to the matrix, as the individuals need it
+ * to evaluate themselves again.
+ *
+ * The CostChanges class keeps the patrols whose times changed and, for each of them, the change of the
+ * time of every system, so that an individual only has to go through the systems of those patrols to
+ * know how their loads moved, along with the updated tmin.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+class CostChanges {
+    private int[] patrols;
+    private int[][] deltas; // Change of the time of every system, only for the patrols that changed
+    private int[] updatePatrols;
+    private int[] updateSystems;
+    private float tmin;
+
+    /**
+     * Constructor for CostChanges.
+     *
+     * @param numPatrols the number of patrols
+     * @param numSystems the number of systems
+     * @param updates the updates, in the order they were applied
+     * @param oldTimes the time of every update before it was applied
+     * @param tmin the tmin of the updated matrix
+     */
+    CostChanges(int numPatrols, int numSystems, List<CostUpdate> updates, int[] oldTimes, float tmin) {
+        this.deltas = new int[numPatrols][];
+        this.updatePatrols = new int[updates.size()];
+        this.updateSystems = new int[updates.size()];
+        this.tmin = tmin;
+
+        int changedPatrols = 0;
+        for (int i = 0; i < updates.size(); i++) {
+            CostUpdate update = updates.get(i);
+            updatePatrols[i] = update.getPatrol();
+            updateSystems[i] = update.getSystem();
+            if (deltas[update.getPatrol()] == null) {
+                deltas[update.getPatrol()] = new int[numSystems];
+                changedPatrols++;
+            }
+            deltas[update.getPatrol()][update.getSystem()] += update.getTime() - oldTimes[i];
+        }
+
+        this.patrols = new int[changedPatrols];
+        int next = 0;
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            if (deltas[patrol] != null) {
+                patrols[next++] = patrol;
+            }
+        }
+    }
+
+    int[] getPatrols() {
+        return patrols;
+    }
+
+    int[] getDeltas(int patrol) {
+        return deltas[patrol];
+    }
+
+    int getUpdateCount() {
+        return updatePatrols.length;
+    }
+
+    int getUpdatePatrol(int i) {
+        return updatePatrols[i];
+    }
+
+    int getUpdateSystem(int i) {
+        return updateSystems[i];
+    }
+
+    float getTmin() {
+        return tmin;
+    }
+}
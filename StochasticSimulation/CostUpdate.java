@@ -0,0 +1,42 @@
+package StochasticSimulation;
+
+/**
+ * This class represents a change of the time a patrol takes to handle a system.
+ *
+ * A batch of CostUpdate objects is given to Simulation.applyCostUpdates, or scheduled for an instant
+ * of the simulation, while the simulation runs; see Population.applyCostUpdates for how the population
+ * is evaluated again.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class CostUpdate {
+    private int patrol;
+    private int system;
+    private int time;
+
+    /**
+     * Constructor for CostUpdate.
+     *
+     * @param patrol the index of the patrol
+     * @param system the index of the system
+     * @param time the new time the patrol takes to handle the system
+     */
+    public CostUpdate(int patrol, int system, int time) {
+        this.patrol = patrol;
+        this.system = system;
+        this.time = time;
+    }
+
+    public int getPatrol() {
+        return patrol;
+    }
+
+    public int getSystem() {
+        return system;
+    }
+
+    public int getTime() {
+        return time;
+    }
+}
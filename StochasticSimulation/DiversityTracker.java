@@ -0,0 +1,130 @@
+package StochasticSimulation;
+
+/**
+ * This class represents an incremental measure of the diversity of a population.
+ *
+ * The DiversityTracker class keeps, for every system, how many individuals of the population assign
+ * it to each patrol, and for every system the sum of c ln c over those counts. Population updates it
+ * whenever an individual enters or leaves, in O(m), the cost of reading the assignment of the
+ * individual, so that the two measures below cost O(m) at an observation instead of the O(v^2 m) of
+ * comparing the individuals pairwise:
+ *
+ * - entropy: the Shannon entropy of the patrol of every system across the population, averaged over
+ *   the systems and divided by ln n, so 0 when every individual is the same and 1 when every patrol is
+ *   equally likely for every system;
+ * - mean distance to the best: the fraction of the systems an individual assigns to a different patrol
+ *   than the best individual does, averaged over the population.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class DiversityTracker {
+    private int numPatrols;
+    private int numSystems;
+    private int[] counts; // Individuals assigning each system to each patrol, system by system
+    private double[] entropySums; // Sum of c ln c over the counts of every system
+    private double[] cLogC; // c ln c for every count seen so far
+    private int[] patrolOfSystem;
+    private int size;
+
+    /**
+     * Constructor for DiversityTracker.
+     *
+     * @param numPatrols the number of patrols
+     * @param numSystems the number of systems
+     */
+    public DiversityTracker(int numPatrols, int numSystems) {
+        this.numPatrols = numPatrols;
+        this.numSystems = numSystems;
+        this.counts = new int[numPatrols * numSystems];
+        this.entropySums = new double[numSystems];
+        this.cLogC = new double[64];
+        for (int c = 1; c < cLogC.length; c++) {
+            cLogC[c] = c * Math.log(c);
+        }
+        this.patrolOfSystem = new int[numSystems];
+    }
+
+    /**
+     * This method counts an individual entering the population.
+     *
+     * @param individual the new individual
+     */
+    public void add(Individual individual) {
+        individual.fillPatrolOfSystem(patrolOfSystem);
+        size++;
+        if (size >= cLogC.length) {
+            growTable();
+        }
+        for (int system = 0; system < numSystems; system++) {
+            int cell = system * numPatrols + patrolOfSystem[system];
+            int count = counts[cell]++;
+            entropySums[system] += cLogC[count + 1] - cLogC[count];
+        }
+    }
+
+    /**
+     * This method counts an individual leaving the population.
+     *
+     * @param individual the individual removed
+     */
+    public void remove(Individual individual) {
+        individual.fillPatrolOfSystem(patrolOfSystem);
+        size--;
+        for (int system = 0; system < numSystems; system++) {
+            int cell = system * numPatrols + patrolOfSystem[system];
+            int count = counts[cell]--;
+            entropySums[system] += cLogC[count - 1] - cLogC[count];
+        }
+    }
+
+    /**
+     * This method returns the entropy of the assignments, averaged over the systems and normalized by ln n.
+     *
+     * @return the entropy, between 0 and 1
+     */
+    public double getEntropy() {
+        if (size < 2 || numPatrols < 2) {
+            return 0;
+        }
+        // H = ln N - (sum of c ln c) / N for every system
+        double total = 0;
+        for (int system = 0; system < numSystems; system++) {
+            total += entropySums[system];
+        }
+        double entropy = Math.log(size) - total / ((double) size * numSystems);
+        return Math.max(0, entropy / Math.log(numPatrols));
+    }
+
+    /**
+     * This method returns the fraction of the systems an individual of the population assigns to a
+     * different patrol than the best individual, averaged over the population.
+     *
+     * @param best the best individual of the population
+     * @return the mean distance to the best, between 0 and 1
+     */
+    public double getMeanDistanceToBest(Individual best) {
+        if (size == 0 || best == null) {
+            return 0;
+        }
+        best.fillPatrolOfSystem(patrolOfSystem);
+        long agreeing = 0;
+        for (int system = 0; system < numSystems; system++) {
+            agreeing += counts[system * numPatrols + patrolOfSystem[system]];
+        }
+        return 1 - (double) agreeing / ((double) size * numSystems);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    private void growTable() {
+        double[] grown = new double[cLogC.length * 2];
+        System.arraycopy(cLogC, 0, grown, 0, cLogC.length);
+        for (int c = cLogC.length; c < grown.length; c++) {
+            grown[c] = c * Math.log(c);
+        }
+        cLogC = grown;
+    }
+}
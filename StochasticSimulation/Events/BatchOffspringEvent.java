@@ -0,0 +1,106 @@
+package StochasticSimulation.Events;
+
+import StochasticSimulation.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class represents an event that makes several candidate children at once and admits the best ones.
+ * It implements the EvolutionEvent interface.
+ * Every time it is executed, the wrapped event builds and evaluates k children of the best individual
+ * in parallel on the common ForkJoin pool, each one drawing from its own stream split from a
+ * SplittableRandom seeded by the simulation, so that a run with a fixed seed is reproducible whatever
+ * the scheduling. Only the best children are added to the population, so an event inserts as many
+ * individuals as before while its child is the best of k tries.
+ * The fingerprint of the parent is computed on the simulation thread before the children are forked,
+ * and the event is never combined with the fitness cache, so the tasks share no mutable state.
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class BatchOffspringEvent implements EvolutionEvent {
+    /**
+     * The event that builds every candidate child.
+     */
+    private OffspringEvent event;
+    /**
+     * The number of candidate children built by every execution.
+     */
+    private int offspring;
+    /**
+     * The number of best candidates added to the population.
+     */
+    private int admitted;
+
+    /**
+     * Constructs a new BatchOffspringEvent around the given event.
+     * @param event the event that builds every candidate child
+     * @param offspring the number of candidate children built by every execution
+     * @param admitted the number of best candidates added to the population, at most offspring
+     */
+    public BatchOffspringEvent(OffspringEvent event, int offspring, int admitted) {
+        this.event = event;
+        this.offspring = offspring;
+        this.admitted = Math.min(admitted, offspring);
+    }
+
+    /**
+     * Returns the event that builds every candidate child.
+     * @return the wrapped event
+     */
+    public OffspringEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Executes the event on the given population.
+     * The candidate children of the best individual are built in parallel, sorted by comfort level,
+     * and the best of them are added to the population.
+     * @param population the population on which the event is executed
+     * @param random a random number generator, used to seed the streams of the children
+     */
+    @Override
+    public void execute(Population population, Random random) {
+        Individual parent = population.getBestIndividual();
+        if (parent == null) {
+            return;
+        }
+        // a impressão digital do pai é calculada aqui, para que as tarefas só a leiam
+        parent.getFingerprint();
+
+        SplittableRandom streams = new SplittableRandom(random.nextLong());
+        List<Callable<Individual>> tasks = new ArrayList<>(offspring);
+        for (int i = 0; i < offspring; i++) {
+            SplittableRandom stream = streams.split();
+            tasks.add(() -> event.createChild(parent, new Random(stream.nextLong())));
+        }
+
+        List<Individual> children = new ArrayList<>(offspring);
+        try {
+            for (Future<Individual> child : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                children.add(child.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to build a child", e.getCause());
+        }
+
+        Collections.sort(children);
+        for (int i = 0; i < admitted; i++) {
+            population.addIndividual(children.get(i));
+        }
+    }
+
+    /**
+     * Calculates the time until the next event for a given individual, which is that of the wrapped event.
+     * @param individual the individual for whom the next event time is calculated
+     * @return the time until the next event
+     */
+    @Override
+    public float getNextEventTime(Individual individual) {
+        return event.getNextEventTime(individual);
+    }
+}
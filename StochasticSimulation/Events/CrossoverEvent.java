@@ -0,0 +1,189 @@
+package StochasticSimulation.Events;
+
+import StochasticSimulation.*;
+import java.util.*;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents a crossover event in a stochastic simulation.
+ * It implements the EvolutionEvent interface.
+ * Two distinct parents are drawn by linear rank selection, so that better individuals are more
+ * likely to breed without the best one always being chosen, and every system of the child comes
+ * from one of them at random. The child is then repaired by moving systems off the patrol that
+ * takes the longest while that shortens it.
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class CrossoverEvent implements EvolutionEvent {
+    /**
+     * The crossover rate parameter.
+     */
+    private float chi;
+    /**
+     * Patrol of every system in the first parent, then in the child.
+     */
+    private int[] child;
+    /**
+     * Patrol of every system in the second parent.
+     */
+    private int[] otherParent;
+    /**
+     * Time taken by every patrol of the child.
+     */
+    private float[] loads;
+
+    /**
+     * Constructs a new CrossoverEvent with the specified crossover rate.
+     * @param chi the crossover rate
+     */
+    public CrossoverEvent(float chi) {
+        this.chi = chi;
+    }
+
+    /**
+     * Executes the crossover event on the given population.
+     * Two distinct parents are selected by rank and each system of the child is taken from either
+     * of them with equal probability. The child is repaired and added to the population.
+     * Nothing happens if the population has fewer than two individuals.
+     * @param population the population on which the event is executed
+     * @param random a random number generator
+     */
+    @Override
+    public void execute(Population population, Random random) {
+        List<Individual> individuals = population.getIndividuals();
+        int size = individuals.size();
+        if (size < 2) {
+            return;
+        }
+
+        int first = rankSelect(size, random);
+        int second = rankSelect(size - 1, random);
+        if (second >= first) {
+            second++;
+        }
+        Individual parent = individuals.get(first);
+        Individual other = individuals.get(second);
+
+        int numSystems = parent.getNumSystems();
+        int numPatrols = parent.getNumPatrols();
+        if (child == null || child.length != numSystems || loads.length != numPatrols) {
+            child = new int[numSystems];
+            otherParent = new int[numSystems];
+            loads = new float[numPatrols];
+        }
+        parent.fillPatrolOfSystem(child);
+        other.fillPatrolOfSystem(otherParent);
+        Arrays.fill(loads, 0);
+
+        // Both parents are valid, so every system goes to a patrol allowed to reach it
+        int[][] matrix = parent.getMatrix();
+        SparseMatrix sparseMatrix = parent.getSparseMatrix();
+        for (int system = 0; system < numSystems; system++) {
+            if (random.nextBoolean()) {
+                child[system] = otherParent[system];
+            }
+            loads[child[system]] += timeOf(matrix, sparseMatrix, child[system], system);
+        }
+
+        float maxPatrolTime = repair(matrix, sparseMatrix, numPatrols, numSystems);
+        population.addIndividual(parent.createChild(child, maxPatrolTime));
+    }
+
+    /**
+     * Draws an index from a population sorted best first, with a probability that decreases
+     * linearly with the rank: index i is drawn with probability (2 * (size - i) - 1) / size^2.
+     * @param size the number of individuals to draw from
+     * @param random a random number generator
+     * @return the drawn index, between 0 and size - 1
+     */
+    private static int rankSelect(int size, Random random) {
+        int index = (int) (size * (1 - Math.sqrt(random.nextDouble())));
+        return Math.min(index, size - 1);
+    }
+
+    /**
+     * Moves systems off the patrol that takes the longest, each time to the patrol that minimizes
+     * the longer of the two, as long as that shortens it. At most n moves are made, and the same
+     * patrol may be the busiest, and lose a system, on every one of them. Each move scans the m
+     * systems and tries each system of the busiest patrol on every patrol that can reach it, all n
+     * patrols on a dense matrix and only the allowed ones on a sparse matrix, so a repair costs
+     * O(n * (m + n * s)) for a busiest patrol of s systems, about O(n * m) on a balanced child.
+     * Fewer moves were tried and left the children of the larger instances far from repaired.
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     * @param numPatrols the number of patrols
+     * @param numSystems the number of systems
+     * @return the time of the patrol that takes the longest after the repair
+     */
+    private float repair(int[][] matrix, SparseMatrix sparseMatrix, int numPatrols, int numSystems) {
+        for (int move = 0; move < numPatrols; move++) {
+            int busiest = 0;
+            for (int patrol = 1; patrol < numPatrols; patrol++) {
+                if (loads[patrol] > loads[busiest]) {
+                    busiest = patrol;
+                }
+            }
+
+            float bestMax = loads[busiest];
+            int bestSystem = -1;
+            int bestTarget = -1;
+            int bestRemovedTime = 0;
+            int bestAddedTime = 0;
+            for (int system = 0; system < numSystems; system++) {
+                if (child[system] != busiest) {
+                    continue;
+                }
+                int removedTime = timeOf(matrix, sparseMatrix, busiest, system);
+                float remaining = loads[busiest] - removedTime;
+                // Numa matriz esparsa só se percorrem as patrulhas que alcançam o sistema
+                int candidates = sparseMatrix != null ? sparseMatrix.getAllowedCount(system) : numPatrols;
+                for (int k = 0; k < candidates; k++) {
+                    int target = sparseMatrix != null ? sparseMatrix.getAllowedPatrol(system, k) : k;
+                    int time = sparseMatrix != null ? sparseMatrix.getAllowedTime(system, k) : matrix[k][system];
+                    if (target == busiest || time == SparseMatrix.NO_ACCESS) {
+                        continue;
+                    }
+                    float newMax = Math.max(remaining, loads[target] + time);
+                    if (newMax < bestMax) {
+                        bestMax = newMax;
+                        bestSystem = system;
+                        bestTarget = target;
+                        bestRemovedTime = removedTime;
+                        bestAddedTime = time;
+                    }
+                }
+            }
+            if (bestSystem < 0) {
+                break;
+            }
+
+            loads[busiest] -= bestRemovedTime;
+            loads[bestTarget] += bestAddedTime;
+            child[bestSystem] = bestTarget;
+        }
+
+        float maxPatrolTime = 0;
+        for (float load : loads) {
+            if (load > maxPatrolTime) {
+                maxPatrolTime = load;
+            }
+        }
+        return maxPatrolTime;
+    }
+
+    private static int timeOf(int[][] matrix, SparseMatrix sparseMatrix, int patrol, int system) {
+        return sparseMatrix != null ? sparseMatrix.get(patrol, system) : matrix[patrol][system];
+    }
+
+    /**
+     * Calculates the time until the next crossover event for a given individual.
+     * The time is calculated based on the individual's comfort level.
+     * @param individual the individual for whom the next event time is calculated
+     * @return the time until the next crossover event
+     */
+    @Override
+    public float getNextEventTime(Individual individual) {
+        float comfortLevel = individual.getComfortLevel();
+        return (1 - (float) Math.log(comfortLevel)) * chi;
+    }
+}
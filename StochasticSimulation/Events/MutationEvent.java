@@ -4,10 +4,10 @@ import StochasticSimulation.*;
 import java.util.*;
 /**
  * This class represents a mutation event in a stochastic simulation.
- * It implements the EvolutionEvent interface.
+ * It implements the OffspringEvent interface.
  * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin 
  */
-public class MutationEvent implements EvolutionEvent {
+public class MutationEvent implements OffspringEvent {
     /**
      * Calculates the time until the next epidemic event for a given individual.
      * Since epidemics are triggered by population size and not by time, this method always returns Float.MAX_VALUE.
@@ -27,7 +27,7 @@ public class MutationEvent implements EvolutionEvent {
     /**
      * Executes the mutation event on the given population.
      * The best individual is selected and a mutation is performed on its distribution.
-     * A system is randomly removed from one patrol and added to another.
+     * A system is randomly removed from one patrol and added to another patrol allowed to reach it.
      * The mutated individual is then added to the population.
      * @param population the population on which the event is executed
      * @param random a random number generator
@@ -36,27 +36,44 @@ public class MutationEvent implements EvolutionEvent {
     public void execute(Population population, Random random) {
         Individual individual = population.getBestIndividual();
         if (individual != null) {
-            List<List<Integer>> newDistribution = new ArrayList<>();
-            for (List<Integer> patrol : individual.getDistribution()) {
-                newDistribution.add(new ArrayList<>(patrol));
-            }
+            population.addIndividual(createChild(individual, random));
+        }
+    }
 
-            int patrolIndex1 = random.nextInt(newDistribution.size());
-            int patrolIndex2 = random.nextInt(newDistribution.size());
-            while (patrolIndex1 == patrolIndex2) {
-                patrolIndex2 = random.nextInt(newDistribution.size());
-            }
+    /**
+     * Builds and evaluates a mutated copy of the given individual without adding it to the population.
+     * A system is randomly removed from one patrol and added to another patrol allowed to reach it.
+     * @param individual the individual the mutated copy is made from
+     * @param random a random number generator
+     * @return the new individual
+     */
+    @Override
+    public Individual createChild(Individual individual, Random random) {
+        List<List<Integer>> newDistribution = new ArrayList<>();
+        for (List<Integer> patrol : individual.getDistribution()) {
+            newDistribution.add(new ArrayList<>(patrol));
+        }
 
-            List<Integer> patrol1 = newDistribution.get(patrolIndex1);
-            List<Integer> patrol2 = newDistribution.get(patrolIndex2);
+        int patrolIndex1 = random.nextInt(newDistribution.size());
+        // On a dense matrix the second patrol is drawn before the system, as it always was
+        int patrolIndex2 = individual.getSparseMatrix() == null ? individual.randomOtherPatrol(patrolIndex1, random) : -1;
+        List<Integer> patrol1 = newDistribution.get(patrolIndex1);
+        long fingerprintChange = 0;
 
-            if (!patrol1.isEmpty()) {
-                int system = patrol1.remove(random.nextInt(patrol1.size()));
-                patrol2.add(system);
+        if (!patrol1.isEmpty()) {
+            int position = random.nextInt(patrol1.size());
+            int system = patrol1.get(position);
+            if (individual.getSparseMatrix() != null) {
+                patrolIndex2 = individual.randomPatrolFor(system, patrolIndex1, random);
+            }
+            if (patrolIndex2 >= 0) {
+                newDistribution.get(patrolIndex2).add(patrol1.remove(position));
+                fingerprintChange = FitnessCache.pairHash(system, patrolIndex2, newDistribution.size())
+                        - FitnessCache.pairHash(system, patrolIndex1, newDistribution.size());
             }
-
-            population.addIndividual(new Individual(individual.getMatrix(), newDistribution));
         }
+
+        return individual.createChild(newDistribution, fingerprintChange);
     }
 
      /**
@@ -5,10 +5,10 @@ import java.util.*;
 
 /**
  * This class represents a reproduction event in a stochastic simulation.
- * It implements the EvolutionEvent interface.
+ * It implements the OffspringEvent interface.
  * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin 
  */
-public class ReproductionEvent implements EvolutionEvent {
+public class ReproductionEvent implements OffspringEvent {
     /**
      * The reproduction rate parameter.
      */
@@ -26,7 +26,8 @@ public class ReproductionEvent implements EvolutionEvent {
     /**
      * Executes the reproduction event on the given population.
      * The best individual is selected and a copy is made of its distribution.
-     * A number of systems are removed from the distribution and then randomly re-added.
+     * A number of systems are removed from the distribution and then randomly re-added
+     * to patrols allowed to reach them.
      * The new individual is then added to the population.
      * @param population the population on which the event is executed
      * @param random a random number generator
@@ -35,34 +36,50 @@ public class ReproductionEvent implements EvolutionEvent {
     public void execute(Population population, Random random) {
         Individual parent = population.getBestIndividual();
         if (parent != null) {
-            List<List<Integer>> newDistribution = new ArrayList<>();
-            
-            for (List<Integer> patrol : parent.getDistribution()) {
-                newDistribution.add(new ArrayList<>(patrol));
-            }
-
-            int numSystemsToRemove = (int) Math.floor((1 - parent.getComfortLevel()) * parent.getDistribution().size());
-            List<Integer> removedSystems = new ArrayList<>();
+            population.addIndividual(createChild(parent, random));
+        }
+    }
 
-            for (int i = 0; i < numSystemsToRemove; i++) {
-                int patrolIndex = random.nextInt(newDistribution.size());
-                List<Integer> patrol = newDistribution.get(patrolIndex);
-                
-                if (!patrol.isEmpty()) {
-                    int system = patrol.remove(random.nextInt(patrol.size()));
-                    removedSystems.add(system);
-                }
-            }
+    /**
+     * Builds and evaluates a child of the given parent without adding it to the population.
+     * A number of systems are removed from a copy of the parent's distribution and then randomly
+     * re-added to patrols allowed to reach them.
+     * @param parent the individual the child is made from
+     * @param random a random number generator
+     * @return the new individual
+     */
+    @Override
+    public Individual createChild(Individual parent, Random random) {
+        List<List<Integer>> newDistribution = new ArrayList<>();
+        
+        for (List<Integer> patrol : parent.getDistribution()) {
+            newDistribution.add(new ArrayList<>(patrol));
+        }
 
-            Collections.shuffle(removedSystems, random);
+        int numSystemsToRemove = (int) Math.floor((1 - parent.getComfortLevel()) * parent.getDistribution().size());
+        List<Integer> removedSystems = new ArrayList<>();
+        long fingerprintChange = 0;
 
-            for (int system : removedSystems) {
-                int patrolIndex = random.nextInt(newDistribution.size());
-                newDistribution.get(patrolIndex).add(system);
+        for (int i = 0; i < numSystemsToRemove; i++) {
+            int patrolIndex = random.nextInt(newDistribution.size());
+            List<Integer> patrol = newDistribution.get(patrolIndex);
+            
+            if (!patrol.isEmpty()) {
+                int system = patrol.remove(random.nextInt(patrol.size()));
+                removedSystems.add(system);
+                fingerprintChange -= FitnessCache.pairHash(system, patrolIndex, newDistribution.size());
             }
+        }
+
+        Collections.shuffle(removedSystems, random);
 
-            population.addIndividual(new Individual(parent.getMatrix(), newDistribution));
+        for (int system : removedSystems) {
+            int patrolIndex = parent.randomPatrolFor(system, -1, random);
+            newDistribution.get(patrolIndex).add(system);
+            fingerprintChange += FitnessCache.pairHash(system, patrolIndex, newDistribution.size());
         }
+
+        return parent.createChild(newDistribution, fingerprintChange);
     }
 
     /**
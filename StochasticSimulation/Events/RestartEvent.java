@@ -8,43 +8,117 @@ import java.util.Random;
 
 public class RestartEvent implements EvolutionEvent {
     private int Gr;
-    private int countmak;
+    private int countmak; // Gerações seguidas sem melhorar o melhor de sempre
+    private float eliteFraction;
+    private int generationLength; // Eventos por geração
+    private int eventsInGeneration;
+    private float bestEverComfort;
+    private int restartCount;
+    private long restartNanos;
+    private float entropyThreshold; // Zero se a diversidade não antecipar reinícios
+    private boolean due;
 
     public RestartEvent(int Gr) {
+        this(Gr, 0.2f, 1);
+    }
+
+    // Uma geração são generationLength eventos; os eliteFraction melhores sobrevivem ao reinício
+    public RestartEvent(int Gr, float eliteFraction, int generationLength) {
         this.Gr = Gr;
         this.countmak = 0;
+        this.eliteFraction = eliteFraction;
+        this.generationLength = Math.max(1, generationLength);
+        this.bestEverComfort = -1;
+    }
+
+    // Conta os eventos realizados e devolve se a estagnação já passou de Gr gerações
+    public synchronized boolean recordEvents(Population population, int events) {
+        Individual bestEver = population.getBestEverIndividual();
+        if (bestEver != null && bestEver.getComfortLevel() > bestEverComfort) {
+            bestEverComfort = bestEver.getComfortLevel();
+            countmak = 0;
+            eventsInGeneration = 0;
+            due = false;
+            return false;
+        }
+
+        eventsInGeneration += events;
+        boolean generationEnded = false;
+        while (eventsInGeneration >= generationLength) {
+            eventsInGeneration -= generationLength;
+            countmak++;
+            generationEnded = true;
+        }
+        // A diversidade só é lida no fim de cada geração, o que custa O(m)
+        if (generationEnded && !due) {
+            due = countmak > Gr || hasConverged(population);
+        }
+        return due;
+    }
+
+    // Uma população sem progresso cuja entropia caiu abaixo do limiar reinicia sem esperar pelas Gr gerações
+    private boolean hasConverged(Population population) {
+        DiversityTracker tracker = population.getDiversityTracker();
+        return entropyThreshold > 0 && tracker != null && tracker.getEntropy() < entropyThreshold;
+    }
+
+    public void setEntropyThreshold(float entropyThreshold) {
+        this.entropyThreshold = entropyThreshold;
+    }
+
+    // Lets a caller that runs the restart under an exclusive lock check first whether it will happen
+    public boolean isDue() {
+        return due;
     }
 
     @Override
     public void execute(Population population, Random random) {
-        if (countmak > Gr) {
+        if (due) {
+            long start = System.nanoTime();
             restartPopulation(population, random);
+            restartNanos += System.nanoTime() - start;
+            restartCount++;
             countmak = 0;
+            eventsInGeneration = 0;
+            due = false;
         }
     }
 
+    public int getRestartCount() {
+        return restartCount;
+    }
+
+    // Tempo gasto nos reinícios efetivamente realizados
+    public long getRestartNanos() {
+        return restartNanos;
+    }
+
     private void restartPopulation(Population population, Random random) {
         List<Individual> individuals = population.getIndividuals();
+        if (individuals.isEmpty()) {
+            return;
+        }
         Collections.sort(individuals);
 
-        int skip = (int) (individuals.size() * 0.2);
-        int replaceCount = (int) (individuals.size() * 0.8);
+        // Pelo menos um indivíduo de elite, mesmo em populações com menos de cinco
+        int skip = Math.max(1, (int) (individuals.size() * eliteFraction));
+        int replaceCount = individuals.size() - skip;
 
         List<Individual> newIndividuals = new ArrayList<>(individuals.subList(0, skip));
         List<Individual> bestIndividuals = new ArrayList<>(newIndividuals);
 
+        int randomCount = 0;
         for (int i = 0; i < replaceCount; i++) {
-            Individual newIndividual;
             if (i < replaceCount * 0.5) {
-                newIndividual = shiftMutation(bestIndividuals.get(random.nextInt(skip)), random);
-            } else if (i < replaceCount * 0.75) {
-                newIndividual = new Individual(population.getIndividuals().get(0).getMatrix(), random);
+                newIndividuals.add(shiftMutation(bestIndividuals.get(random.nextInt(skip)), random));
             } else {
-                newIndividual = randomNewIndividual(population.getIndividuals().get(0).getMatrix(), random);
+                randomCount++;
             }
-            newIndividuals.add(newIndividual);
         }
 
+        // The remaining half are random individuals, evaluated together
+        newIndividuals.addAll(randomNewIndividuals(bestIndividuals.get(0), random, randomCount));
+
         population.setIndividuals(newIndividuals);
     }
 
@@ -55,24 +129,29 @@ public class RestartEvent implements EvolutionEvent {
         }
 
         int patrolIndex1 = random.nextInt(newDistribution.size());
-        int patrolIndex2 = random.nextInt(newDistribution.size());
-        while (patrolIndex1 == patrolIndex2) {
-            patrolIndex2 = random.nextInt(newDistribution.size());
-        }
-
+        // On a dense matrix the second patrol is drawn before the system, as it always was
+        int patrolIndex2 = individual.getSparseMatrix() == null ? individual.randomOtherPatrol(patrolIndex1, random) : -1;
         List<Integer> patrol1 = newDistribution.get(patrolIndex1);
-        List<Integer> patrol2 = newDistribution.get(patrolIndex2);
+        long fingerprintChange = 0;
 
         if (!patrol1.isEmpty()) {
-            int system = patrol1.remove(random.nextInt(patrol1.size()));
-            patrol2.add(system);
+            int position = random.nextInt(patrol1.size());
+            int system = patrol1.get(position);
+            if (individual.getSparseMatrix() != null) {
+                patrolIndex2 = individual.randomPatrolFor(system, patrolIndex1, random);
+            }
+            if (patrolIndex2 >= 0) {
+                newDistribution.get(patrolIndex2).add(patrol1.remove(position));
+                fingerprintChange = FitnessCache.pairHash(system, patrolIndex2, newDistribution.size())
+                        - FitnessCache.pairHash(system, patrolIndex1, newDistribution.size());
+            }
         }
 
-        return new Individual(individual.getMatrix(), newDistribution);
+        return individual.createChild(newDistribution, fingerprintChange);
     }
 
-    private Individual randomNewIndividual(int[][] matrix, Random random) {
-        return new Individual(matrix, random);
+    private List<Individual> randomNewIndividuals(Individual template, Random random, int count) {
+        return template.createRandomBatch(random, count);
     }
 
     @Override
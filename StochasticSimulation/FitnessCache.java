@@ -0,0 +1,154 @@
+package StochasticSimulation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a bounded cache of the metrics of already evaluated distributions.
+ *
+ * The FitnessCache class maps a canonical fingerprint of a distribution to its optimal patrol
+ * time and comfort level, so that a distribution the population has already seen (an identical
+ * copy made by a mutation of an empty patrol, or an A to B to A move) is not evaluated again.
+ * The fingerprint only depends on which patrol each system is assigned to, not on the order of
+ * the systems within a patrol. As it is a sum over the systems, the fingerprint of a child is
+ * the one of its parent plus the change of the pairs of the systems that moved (see pairHash),
+ * so a child is looked up without going through all of its systems. Entries are evicted in least
+ * recently used order once the configured memory cap is reached.
+ *
+ * Only the 64-bit fingerprint is stored, so a lookup trusts a match without comparing the
+ * distributions. Two distinct distributions share a fingerprint with a probability of about
+ * 2^-64, which for the million entries a large cache holds is below one in 10^7 over a whole run;
+ * the child would then be given the metrics of the other distribution.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class FitnessCache {
+    /**
+     * Estimated heap bytes taken by one entry: the boxed key, the metrics array and the linked map entry.
+     */
+    private static final int BYTES_PER_ENTRY = 96;
+
+    private LinkedHashMap<Long, float[]> entries;
+    private int maxEntries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor for FitnessCache.
+     *
+     * @param maxMegabytes the memory cap of the cache, in megabytes
+     */
+    public FitnessCache(int maxMegabytes) {
+        this.maxEntries = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) maxMegabytes * 1024 * 1024 / BYTES_PER_ENTRY));
+        this.entries = new LinkedHashMap<Long, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * This method computes the canonical fingerprint of a distribution, as the sum of a
+     * well mixed hash of every (system, patrol) pair, which does not depend on the order
+     * of the systems within each patrol.
+     *
+     * @param distribution the distribution of systems among patrols
+     * @return the fingerprint of the distribution
+     */
+    public static long fingerprint(List<List<Integer>> distribution) {
+        long fingerprint = 0;
+        int numPatrols = distribution.size();
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            for (int system : distribution.get(patrol)) {
+                fingerprint += pairHash(system, patrol, numPatrols);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * This method returns the part of the fingerprint of a distribution due to a system being in a
+     * patrol. Moving a system from one patrol to another changes the fingerprint by the hash of the
+     * new pair minus the hash of the old one.
+     *
+     * @param system the index of the system
+     * @param patrol the index of the patrol holding it
+     * @param numPatrols the number of patrols
+     * @return the hash of the pair
+     */
+    public static long pairHash(int system, int patrol, int numPatrols) {
+        return mix((long) system * numPatrols + patrol);
+    }
+
+    /**
+     * This method scrambles a value with the SplitMix64 finalizer.
+     *
+     * @param value the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * This method looks up the metrics of a distribution.
+     *
+     * @param fingerprint the fingerprint of the distribution
+     * @return the optimal patrol time and the comfort level, or null if the distribution is not cached
+     */
+    public synchronized float[] get(long fingerprint) {
+        float[] metrics = entries.get(fingerprint);
+        if (metrics == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return metrics;
+    }
+
+    /**
+     * This method stores the metrics of a distribution.
+     *
+     * @param fingerprint the fingerprint of the distribution
+     * @param optimalPatrolTime the optimal patrol time of the distribution
+     * @param comfortLevel the comfort level of the distribution
+     */
+    public synchronized void put(long fingerprint, float optimalPatrolTime, float comfortLevel) {
+        entries.put(fingerprint, new float[] { optimalPatrolTime, comfortLevel });
+    }
+
+    /**
+     * This method forgets every cached distribution, once the matrix the metrics were computed on has changed.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * This method returns the fraction of lookups that found the distribution in the cache.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (float) hits / lookups;
+    }
+}
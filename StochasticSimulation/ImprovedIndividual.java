@@ -12,15 +12,57 @@ public class ImprovedIndividual extends Individual {
         super(matrix, distribution);
     }
 
+    protected ImprovedIndividual(Individual other, List<List<Integer>> distribution) {
+        super(other, distribution);
+    }
+
+    protected ImprovedIndividual(Individual other, List<List<Integer>> distribution, boolean evaluate) {
+        super(other, distribution, evaluate);
+    }
+
+    protected ImprovedIndividual(Individual other, Random random) {
+        super(other, random);
+    }
+
+    protected ImprovedIndividual(Individual other, Random random, boolean evaluate) {
+        super(other, random, evaluate);
+    }
+
+    @Override
+    protected Individual createUnevaluated(Random random) {
+        return new ImprovedIndividual(this, random, false);
+    }
+
+    @Override
+    protected Individual createUnevaluatedChild(List<List<Integer>> distribution) {
+        return new ImprovedIndividual(this, distribution, false);
+    }
+
+    @Override
+    protected void applyPatrolTime(float maxPatrolTime) {
+        this.optimalPatrolTime = maxPatrolTime;
+        this.comfortLevel = tmin / maxPatrolTime;
+    }
+
+    @Override
+    public Individual createChild(List<List<Integer>> distribution) {
+        return new ImprovedIndividual(this, distribution);
+    }
+
+    @Override
+    public Individual createRandom(Random random) {
+        return new ImprovedIndividual(this, random);
+    }
+
     @Override
     public void computeMetrics() {
-        int numPatrols = matrix.length;
+        int numPatrols = getNumPatrols();
         float[] patrolTimes = new float[numPatrols];
 
         for (int patrol = 0; patrol < numPatrols; patrol++) {
             float totalTime = 0;
             for (int system : distribution.get(patrol)) {
-                totalTime += matrix[patrol][system];
+                totalTime += timeOf(patrol, system);
             }
             patrolTimes[patrol] = totalTime;
         }
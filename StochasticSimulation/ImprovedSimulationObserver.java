@@ -1,12 +1,22 @@
 package StochasticSimulation;
 
+import java.io.PrintStream;
+
 public class ImprovedSimulationObserver extends SimulationObserver {
     private int restartCounter = 0;
 
+    public ImprovedSimulationObserver() {
+        super();
+    }
+
+    public ImprovedSimulationObserver(PrintStream out, boolean compact) {
+        super(out, compact);
+    }
+
     @Override
     public void update(int observationNumber, float currentTime, int eventCount, int epidemicCount, Population population) {
         super.update(observationNumber, currentTime, eventCount, epidemicCount, population);
-        System.out.println("                Number of restarts: " + restartCounter);
+        out.println("                Number of restarts: " + restartCounter);
     }
 
     @Override
@@ -4,23 +4,32 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import Parser.SparseMatrix;
+
 /**
  * This class represents an individual in a stochastic simulation.
  * 
  * The Individual class encapsulates the properties and behaviors of an individual,
  * including the matrix of patrol times, the distribution of systems among patrols,
  * the comfort level, and the optimal patrol time. It implements the Comparable
- * interface to allow comparison based on comfort level.
+ * interface to allow comparison based on comfort level. The patrol times are held either
+ * in a dense matrix or, when most patrols cannot reach most systems, in a SparseMatrix;
+ * in the latter case systems are only ever placed on patrols allowed to reach them.
  *
  * @version 1.0
  * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
  */
 public class Individual implements Comparable<Individual> {
     protected int[][] matrix;
+    protected SparseMatrix sparseMatrix;
     protected List<List<Integer>> distribution;
     protected float comfortLevel;
     protected float optimalPatrolTime;
     protected float tmin;
+    protected FitnessCache fitnessCache;
+    protected boolean batchEvaluated;
+    private long fingerprint;
+    private volatile boolean fingerprinted;
 
     /**
      * Constructor for Individual.
@@ -54,31 +63,408 @@ public class Individual implements Comparable<Individual> {
         computeMetrics();
     }
 
+    /**
+     * Constructor for Individual.
+     * Initializes the individual with a sparse matrix and randomizes the initial distribution of systems
+     * among the patrols allowed to reach them.
+     *
+     * @param sparseMatrix the sparse matrix representing patrol times
+     * @param random the Random object used for randomizing the distribution
+     */
+    public Individual(SparseMatrix sparseMatrix, Random random) {
+        this.sparseMatrix = sparseMatrix;
+        this.distribution = new ArrayList<>();
+        for (int i = 0; i < sparseMatrix.getN(); i++) {
+            distribution.add(new ArrayList<>());
+        }
+        this.tmin = calculateTmin(sparseMatrix);
+        randomizeDistribution(random);
+        computeMetrics();
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes the individual with a sparse matrix and a specific distribution.
+     *
+     * @param sparseMatrix the sparse matrix representing patrol times
+     * @param distribution the specific distribution of systems among patrols
+     */
+    public Individual(SparseMatrix sparseMatrix, List<List<Integer>> distribution) {
+        this.sparseMatrix = sparseMatrix;
+        this.distribution = distribution;
+        this.tmin = calculateTmin(sparseMatrix);
+        computeMetrics();
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual sharing the matrix and tmin of another one with a specific distribution,
+     * so that tmin is not computed again.
+     *
+     * @param other the individual whose matrix and tmin are shared
+     * @param distribution the specific distribution of systems among patrols
+     */
+    protected Individual(Individual other, List<List<Integer>> distribution) {
+        this(other, distribution, true);
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual sharing the matrix and tmin of another one with a specific distribution,
+     * leaving its metrics to be set later, with applyPatrolTime, if evaluate is false.
+     *
+     * @param other the individual whose matrix and tmin are shared
+     * @param distribution the specific distribution of systems among patrols
+     * @param evaluate whether to compute the metrics right away
+     */
+    protected Individual(Individual other, List<List<Integer>> distribution, boolean evaluate) {
+        this.matrix = other.matrix;
+        this.sparseMatrix = other.sparseMatrix;
+        this.tmin = other.tmin;
+        this.fitnessCache = other.fitnessCache;
+        this.batchEvaluated = other.batchEvaluated;
+        this.distribution = distribution;
+        if (evaluate) {
+            evaluate();
+        }
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual on a dense or a sparse matrix without a distribution, for subclasses
+     * that hold the distribution elsewhere.
+     *
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     */
+    protected Individual(int[][] matrix, SparseMatrix sparseMatrix) {
+        this.matrix = matrix;
+        this.sparseMatrix = sparseMatrix;
+        this.tmin = sparseMatrix != null ? calculateTmin(sparseMatrix) : calculateTmin(matrix);
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual sharing the matrix and tmin of another one without a distribution,
+     * for subclasses that hold the distribution elsewhere.
+     *
+     * @param other the individual whose matrix and tmin are shared
+     */
+    protected Individual(Individual other) {
+        this.matrix = other.matrix;
+        this.sparseMatrix = other.sparseMatrix;
+        this.tmin = other.tmin;
+        this.fitnessCache = other.fitnessCache;
+        this.batchEvaluated = other.batchEvaluated;
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual sharing the matrix and tmin of another one with a random distribution.
+     *
+     * @param other the individual whose matrix and tmin are shared
+     * @param random the Random object used for randomizing the distribution
+     */
+    protected Individual(Individual other, Random random) {
+        this(other, random, true);
+    }
+
+    /**
+     * Constructor for Individual.
+     * Initializes an individual sharing the matrix and tmin of another one with a random distribution,
+     * leaving its metrics to be set later, by a BatchEvaluator, if evaluate is false.
+     *
+     * @param other the individual whose matrix and tmin are shared
+     * @param random the Random object used for randomizing the distribution
+     * @param evaluate whether to compute the metrics right away
+     */
+    protected Individual(Individual other, Random random, boolean evaluate) {
+        this.matrix = other.matrix;
+        this.sparseMatrix = other.sparseMatrix;
+        this.tmin = other.tmin;
+        this.fitnessCache = other.fitnessCache;
+        this.batchEvaluated = other.batchEvaluated;
+        this.distribution = new ArrayList<>();
+        for (int i = 0; i < other.getNumPatrols(); i++) {
+            distribution.add(new ArrayList<>());
+        }
+        randomizeDistribution(random);
+        if (evaluate) {
+            evaluate();
+        }
+    }
+
+    /**
+     * This method creates a new individual of the same kind, on the same matrix, with the given distribution.
+     *
+     * @param distribution the distribution of the new individual
+     * @return the new individual
+     */
+    public Individual createChild(List<List<Integer>> distribution) {
+        return new Individual(this, distribution);
+    }
+
+    /**
+     * This method creates a new individual of the same kind, on the same matrix, with a distribution
+     * made from the one of this individual by moving some systems. The caller adds up the change of
+     * the fingerprint while it moves them, so the child is looked up in the fitness cache without
+     * going through all of its systems.
+     *
+     * @param distribution the distribution of the new individual
+     * @param fingerprintChange the sum of FitnessCache.pairHash over the new pairs of the moved systems
+     *        minus the sum over their old pairs
+     * @return the new individual
+     */
+    public Individual createChild(List<List<Integer>> distribution, long fingerprintChange) {
+        Individual child = createUnevaluatedChild(distribution);
+        if (fitnessCache != null) {
+            child.fingerprint = getFingerprint() + fingerprintChange;
+            child.fingerprinted = true;
+        }
+        child.evaluate();
+        return child;
+    }
+
+    /**
+     * This method creates a new individual of the same kind, on the same matrix, from the patrol of
+     * every system, with metrics already known to the caller, so that it is not evaluated again.
+     *
+     * @param patrolOfSystem the patrol each system is assigned to
+     * @param maxPatrolTime the time of the patrol that takes the longest
+     * @return the new individual
+     */
+    public Individual createChild(int[] patrolOfSystem, float maxPatrolTime) {
+        List<List<Integer>> childDistribution = new ArrayList<>();
+        for (int i = 0; i < getNumPatrols(); i++) {
+            childDistribution.add(new ArrayList<>());
+        }
+        for (int system = 0; system < patrolOfSystem.length; system++) {
+            childDistribution.get(patrolOfSystem[system]).add(system);
+        }
+        Individual child = createUnevaluatedChild(childDistribution);
+        child.applyPatrolTime(maxPatrolTime);
+        return child;
+    }
+
+    /**
+     * This method creates a new individual of the same kind with the given distribution, without computing its metrics.
+     *
+     * @param distribution the distribution of the new individual
+     * @return the new individual, whose metrics must be set with applyPatrolTime
+     */
+    protected Individual createUnevaluatedChild(List<List<Integer>> distribution) {
+        return new Individual(this, distribution, false);
+    }
+
+    /**
+     * This method writes the patrol of every system of the individual into an array.
+     *
+     * @param patrolOfSystem the array to fill, with one entry per system
+     */
+    public void fillPatrolOfSystem(int[] patrolOfSystem) {
+        for (int patrol = 0; patrol < distribution.size(); patrol++) {
+            for (int system : distribution.get(patrol)) {
+                patrolOfSystem[system] = patrol;
+            }
+        }
+    }
+
+    /**
+     * This method creates a new individual of the same kind, on the same matrix, with a random distribution.
+     *
+     * @param random the Random object used for randomizing the distribution
+     * @return the new individual
+     */
+    public Individual createRandom(Random random) {
+        return new Individual(this, random);
+    }
+
+    /**
+     * This method creates several new individuals of the same kind, on the same matrix, with random
+     * distributions, and evaluates them together with a BatchEvaluator when batch evaluation is on and
+     * the matrix is dense.
+     *
+     * @param random the Random object used for randomizing the distributions
+     * @param count the number of individuals to create
+     * @return the new individuals
+     */
+    public List<Individual> createRandomBatch(Random random, int count) {
+        List<Individual> individuals = new ArrayList<>(count);
+        BatchEvaluator evaluator = batchEvaluated && matrix != null ? BatchEvaluator.forMatrix(matrix) : null;
+        for (int i = 0; i < count; i++) {
+            individuals.add(evaluator != null ? createUnevaluated(random) : createRandom(random));
+        }
+        if (evaluator != null && count > 0) {
+            evaluator.evaluate(individuals);
+        }
+        return individuals;
+    }
+
+    /**
+     * This method creates a new individual of the same kind with a random distribution, without computing its metrics.
+     *
+     * @param random the Random object used for randomizing the distribution
+     * @return the new individual, to be evaluated by a BatchEvaluator
+     */
+    protected Individual createUnevaluated(Random random) {
+        return new Individual(this, random, false);
+    }
+
+    /**
+     * This method sets the metrics of the individual from its maximum patrol time.
+     *
+     * @param maxPatrolTime the time of the patrol that takes the longest
+     */
+    protected void applyPatrolTime(float maxPatrolTime) {
+        this.optimalPatrolTime = maxPatrolTime;
+        this.comfortLevel = tmin / maxPatrolTime;
+        if (this.comfortLevel > 1.0) {
+            this.comfortLevel = 1.0f;
+        }
+    }
+
+    /**
+     * This method draws a random patrol to place a system on. With a sparse matrix only the
+     * patrols allowed to reach the system are drawn.
+     *
+     * @param system the index of the system
+     * @param exclude a patrol that must not be drawn, typically the one currently holding the system, or -1
+     * @param random the Random object used for the draw
+     * @return the index of the drawn patrol, or -1 if there is no other patrol to place the system on
+     */
+    public int randomPatrolFor(int system, int exclude, Random random) {
+        if (sparseMatrix != null) {
+            return sparseMatrix.randomPatrol(system, exclude, random);
+        }
+        int numPatrols = matrix.length;
+        if (exclude < 0) {
+            return random.nextInt(numPatrols);
+        }
+        if (numPatrols == 1) {
+            return -1;
+        }
+        int patrol = random.nextInt(numPatrols - 1);
+        return patrol >= exclude ? patrol + 1 : patrol;
+    }
+
+    /**
+     * This method draws a patrol other than the given one on a dense matrix, by rejection, in the
+     * order mutations have always drawn it, so that seeded runs on dense instances keep their results.
+     *
+     * @param exclude the patrol that must not be drawn
+     * @param random the Random object used for the draw
+     * @return the index of the drawn patrol, or -1 if there is only one patrol
+     */
+    public int randomOtherPatrol(int exclude, Random random) {
+        int numPatrols = getNumPatrols();
+        if (numPatrols == 1) {
+            return -1;
+        }
+        int patrol = random.nextInt(numPatrols);
+        while (patrol == exclude) {
+            patrol = random.nextInt(numPatrols);
+        }
+        return patrol;
+    }
+
+    /**
+     * This method returns the time a patrol takes to handle a system.
+     *
+     * @param patrol the index of the patrol
+     * @param system the index of the system
+     * @return the time, or SparseMatrix.NO_ACCESS if the patrol cannot reach the system
+     */
+    protected int timeOf(int patrol, int system) {
+        if (sparseMatrix != null) {
+            return sparseMatrix.get(patrol, system);
+        }
+        return matrix[patrol][system];
+    }
+
+    /**
+     * This method returns the number of patrols.
+     *
+     * @return the number of patrols
+     */
+    public int getNumPatrols() {
+        return sparseMatrix != null ? sparseMatrix.getN() : matrix.length;
+    }
+
+    /**
+     * This method returns the number of planetary systems.
+     *
+     * @return the number of systems
+     */
+    public int getNumSystems() {
+        return sparseMatrix != null ? sparseMatrix.getM() : matrix[0].length;
+    }
+
     /**
      * This method randomly assigns systems to patrols.
      *
      * @param random the Random object used for randomizing the distribution
      */
     protected void randomizeDistribution(Random random) {
-        int numSystems = matrix[0].length;
-        int numPatrols = matrix.length;
+        int numSystems = getNumSystems();
         for (int system = 0; system < numSystems; system++) {
-            int patrol = random.nextInt(numPatrols);
+            int patrol = randomPatrolFor(system, -1, random);
             distribution.get(patrol).add(system);
         }
     }
 
+    /**
+     * This method sets the cache the metrics of this individual and of the individuals created from it are looked up in.
+     *
+     * @param fitnessCache the shared fitness cache, or null to always compute the metrics
+     */
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        this.fitnessCache = fitnessCache;
+    }
+
+    /**
+     * This method sets whether the random individuals created from this one, and from the individuals
+     * created from it, are evaluated together by a BatchEvaluator. It is off by default: filling a tile
+     * costs about as much as evaluating its individuals one by one, and the evaluator keeps a flattened
+     * copy of the matrix.
+     *
+     * @param batchEvaluated whether createRandomBatch uses a BatchEvaluator on a dense matrix
+     */
+    public void setBatchEvaluated(boolean batchEvaluated) {
+        this.batchEvaluated = batchEvaluated;
+    }
+
+    /**
+     * This method sets the metrics of the individual, taking them from the fitness cache when the
+     * same distribution has already been evaluated, and computing and caching them otherwise.
+     */
+    protected void evaluate() {
+        if (fitnessCache == null) {
+            computeMetrics();
+            return;
+        }
+
+        long fingerprint = getFingerprint();
+        float[] metrics = fitnessCache.get(fingerprint);
+        if (metrics != null) {
+            this.optimalPatrolTime = metrics[0];
+            this.comfortLevel = metrics[1];
+        } else {
+            computeMetrics();
+            fitnessCache.put(fingerprint, optimalPatrolTime, comfortLevel);
+        }
+    }
+
     /**
      * This method computes the metrics for the individual, including the optimal patrol time and comfort level.
      */
     public void computeMetrics() {
-        int numPatrols = matrix.length;
+        int numPatrols = getNumPatrols();
         float[] patrolTimes = new float[numPatrols];
 
         for (int patrol = 0; patrol < numPatrols; patrol++) {
             float totalTime = 0;
             for (int system : distribution.get(patrol)) {
-                totalTime += matrix[patrol][system];
+                totalTime += timeOf(patrol, system);
             }
             patrolTimes[patrol] = totalTime;
         }
@@ -97,6 +483,56 @@ public class Individual implements Comparable<Individual> {
         }
     }
 
+    /**
+     * This method moves the individual to another matrix with the same times, such as a copy of its own.
+     *
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     */
+    void setMatrix(int[][] matrix, SparseMatrix sparseMatrix) {
+        this.matrix = matrix;
+        this.sparseMatrix = sparseMatrix;
+    }
+
+    /**
+     * This method evaluates the individual again after the matrix it shares has changed, going only
+     * through the systems of the patrols whose times changed. Their loads before the change are found
+     * by taking the changes back out, so the maximum patrol time only has to be computed again from
+     * scratch when the patrol that held it got faster.
+     *
+     * @param changes the changes applied to the matrix, with the updated tmin
+     */
+    void applyCostChanges(CostChanges changes) {
+        this.tmin = changes.getTmin();
+        float oldMax = getOptimalPatrolTime();
+        float changedMax = 0;
+        boolean maxChanged = false;
+
+        for (int patrol : changes.getPatrols()) {
+            int[] deltas = changes.getDeltas(patrol);
+            float load = 0;
+            int delta = 0;
+            for (int system : distribution.get(patrol)) {
+                load += timeOf(patrol, system);
+                delta += deltas[system];
+            }
+            if (delta == 0) {
+                continue;
+            }
+            if (load - delta >= oldMax) {
+                maxChanged = true;
+            }
+            changedMax = Math.max(changedMax, load);
+        }
+
+        if (maxChanged && changedMax < oldMax) {
+            // A patrol holding the maximum got faster, and no other one is known to be below it
+            computeMetrics();
+        } else {
+            applyPatrolTime(Math.max(oldMax, changedMax));
+        }
+    }
+
     /**
      * This method computes the minimum average time (tmin) by finding the minimum time each system can be handled by any patrol and summing these minimum times.
      *
@@ -122,6 +558,21 @@ public class Individual implements Comparable<Individual> {
         return tmin / numPatrols;
     }
 
+    /**
+     * This method computes the minimum average time (tmin) from a sparse matrix, taking for each system
+     * the minimum time over the patrols allowed to reach it.
+     *
+     * @param sparseMatrix the sparse matrix representing patrol times
+     * @return the minimum average time (tmin)
+     */
+    protected float calculateTmin(SparseMatrix sparseMatrix) {
+        float tmin = 0;
+        for (int system = 0; system < sparseMatrix.getM(); system++) {
+            tmin += sparseMatrix.getMinTime(system);
+        }
+        return tmin / sparseMatrix.getN();
+    }
+
     /**
      * This method returns the comfort level of the individual.
      *
@@ -149,15 +600,38 @@ public class Individual implements Comparable<Individual> {
         return distribution;
     }
 
+    /**
+     * This method returns the canonical fingerprint of the distribution of the individual, computed
+     * on the first call unless the individual was created with the one of its parent.
+     *
+     * @return the fingerprint of the distribution, see FitnessCache.fingerprint
+     */
+    public long getFingerprint() {
+        if (!fingerprinted) {
+            fingerprint = FitnessCache.fingerprint(getDistribution());
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
     /**
      * This method returns the matrix representing patrol times.
      *
-     * @return the matrix representing patrol times
+     * @return the matrix representing patrol times, or null if the times are held in a sparse matrix
      */
     public int[][] getMatrix() {
         return matrix;
     }
 
+    /**
+     * This method returns the sparse matrix representing patrol times.
+     *
+     * @return the sparse matrix representing patrol times, or null if the times are held in a dense matrix
+     */
+    public SparseMatrix getSparseMatrix() {
+        return sparseMatrix;
+    }
+
     /**
      * Compares this individual with another based on comfort level.
      *
@@ -0,0 +1,212 @@
+package StochasticSimulation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents an off-heap store of the distributions of a population.
+ *
+ * The IndividualArena class keeps, for every slot, the patrol each system is assigned to as a
+ * fixed-width packed index (one byte up to 256 patrols, two up to 65536, four otherwise) in direct
+ * byte buffers allocated in pages, and the optimal patrol time and comfort level of the slot in
+ * parallel float arrays. Freed slots are kept in a free list and reused, and the arena only grows
+ * by adding pages, so slots never move. Heap usage is then a few bytes per individual regardless
+ * of the number of systems. An arena is not thread-safe and belongs to a single population.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class IndividualArena {
+    /**
+     * The target size of a page of slots, in bytes.
+     */
+    private static final int PAGE_BYTES = 1 << 24;
+
+    private int numPatrols;
+    private int numSystems;
+    private int width;
+    private int slotBytes;
+    private int slotsPerPage;
+    private List<ByteBuffer> pages;
+    private float[] patrolTimes;
+    private float[] comfortLevels;
+    private int[] freeSlots;
+    private int freeCount;
+    private int capacity;
+    private float[] loads; // Load of each patrol, reused by every evaluation
+
+    /**
+     * Constructor for IndividualArena.
+     *
+     * @param numPatrols the number of patrols
+     * @param numSystems the number of planetary systems
+     * @param initialCapacity the number of slots to allocate up front, typically the maximum population size
+     * @throws IllegalArgumentException if a single slot does not fit in a direct buffer
+     */
+    public IndividualArena(int numPatrols, int numSystems, int initialCapacity) {
+        this.numPatrols = numPatrols;
+        this.numSystems = numSystems;
+        if ((long) numSystems * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many systems for an arena: " + numSystems);
+        }
+        this.width = numPatrols <= 1 << 8 ? 1 : numPatrols <= 1 << 16 ? 2 : 4;
+        this.slotBytes = Math.max(1, numSystems * width);
+        // Pages hold the initial capacity, up to PAGE_BYTES, so that a small population does not reserve 16 MB
+        this.slotsPerPage = Math.max(1, Math.min(Math.max(1, initialCapacity), PAGE_BYTES / slotBytes));
+        this.pages = new ArrayList<>();
+        this.patrolTimes = new float[0];
+        this.comfortLevels = new float[0];
+        this.freeSlots = new int[0];
+        this.loads = new float[numPatrols];
+        grow(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * This method adds pages until the arena has at least the given number of slots.
+     *
+     * @param minCapacity the number of slots needed
+     */
+    private void grow(int minCapacity) {
+        int newCapacity = capacity;
+        while (newCapacity < minCapacity) {
+            pages.add(ByteBuffer.allocateDirect(slotsPerPage * slotBytes).order(ByteOrder.nativeOrder()));
+            newCapacity += slotsPerPage;
+        }
+
+        patrolTimes = Arrays.copyOf(patrolTimes, newCapacity);
+        comfortLevels = Arrays.copyOf(comfortLevels, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        // New slots are pushed in decreasing order so that they are handed out in increasing order
+        for (int slot = newCapacity - 1; slot >= capacity; slot--) {
+            freeSlots[freeCount++] = slot;
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * This method reserves a free slot, adding a page if there is none.
+     *
+     * @return the index of the slot
+     */
+    public int allocate() {
+        if (freeCount == 0) {
+            grow(capacity + 1);
+        }
+        return freeSlots[--freeCount];
+    }
+
+    /**
+     * This method returns a slot to the free list.
+     *
+     * @param slot the index of the slot
+     */
+    public void free(int slot) {
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * This method returns the patrol a system is assigned to in a slot.
+     *
+     * @param slot the index of the slot
+     * @param system the index of the system
+     * @return the index of the patrol
+     */
+    public int getPatrol(int slot, int system) {
+        ByteBuffer page = pages.get(slot / slotsPerPage);
+        int offset = (slot % slotsPerPage) * slotBytes + system * width;
+        switch (width) {
+            case 1:
+                return page.get(offset) & 0xFF;
+            case 2:
+                return page.getShort(offset) & 0xFFFF;
+            default:
+                return page.getInt(offset);
+        }
+    }
+
+    /**
+     * This method assigns a system to a patrol in a slot.
+     *
+     * @param slot the index of the slot
+     * @param system the index of the system
+     * @param patrol the index of the patrol
+     */
+    public void setPatrol(int slot, int system, int patrol) {
+        ByteBuffer page = pages.get(slot / slotsPerPage);
+        int offset = (slot % slotsPerPage) * slotBytes + system * width;
+        switch (width) {
+            case 1:
+                page.put(offset, (byte) patrol);
+                break;
+            case 2:
+                page.putShort(offset, (short) patrol);
+                break;
+            default:
+                page.putInt(offset, patrol);
+        }
+    }
+
+    /**
+     * This method computes the load of every patrol in a slot.
+     *
+     * @param slot the index of the slot
+     * @param individual an individual on the matrix of the arena, used to look up the times
+     * @return the load of every patrol, in an array reused by the next call
+     */
+    float[] computeLoads(int slot, Individual individual) {
+        Arrays.fill(loads, 0);
+        for (int system = 0; system < numSystems; system++) {
+            int patrol = getPatrol(slot, system);
+            loads[patrol] += individual.timeOf(patrol, system);
+        }
+        return loads;
+    }
+
+    public float getPatrolTime(int slot) {
+        return patrolTimes[slot];
+    }
+
+    public float getComfortLevel(int slot) {
+        return comfortLevels[slot];
+    }
+
+    /**
+     * This method stores the metrics of a slot.
+     *
+     * @param slot the index of the slot
+     * @param patrolTime the optimal patrol time of the slot
+     * @param comfortLevel the comfort level of the slot
+     */
+    public void setMetrics(int slot, float patrolTime, float comfortLevel) {
+        patrolTimes[slot] = patrolTime;
+        comfortLevels[slot] = comfortLevel;
+    }
+
+    public int getNumPatrols() {
+        return numPatrols;
+    }
+
+    public int getNumSystems() {
+        return numSystems;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUsedSlots() {
+        return capacity - freeCount;
+    }
+
+    /**
+     * This method returns the memory held outside the heap by the pages of the arena.
+     *
+     * @return the size of the pages, in bytes
+     */
+    public long getOffHeapBytes() {
+        return (long) pages.size() * slotsPerPage * slotBytes;
+    }
+}
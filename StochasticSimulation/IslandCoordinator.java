@@ -0,0 +1,317 @@
+package StochasticSimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class represents the coordinator of a distributed island model.
+ *
+ * The IslandCoordinator class listens on a TCP port for the islands, simulation processes started with
+ * the --island option on the same instance, on this host or others. Every island sends its elites at
+ * each observation, and the coordinator relays them to every other island still connected. It keeps
+ * the global best ever distribution and, for every observation, the number of islands that reported
+ * it, the best comfort among them, their total number of events and the quantiles of the comfort of
+ * all their populations, merged from the sketches the islands send. An island that drops out, or whose
+ * connection fails while elites are relayed to it, is left out of the model while the others go on.
+ *
+ * The coordinator waits for the expected number of islands, or until no island has joined for a
+ * minute, and prints its summary once every island joined has finished or dropped out.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class IslandCoordinator {
+    /**
+     * Longest wait, in milliseconds, for the next island to join.
+     */
+    private static final int JOIN_TIMEOUT = 60000;
+
+    private int port;
+    private int expectedIslands;
+    private PrintStream out;
+    private List<Peer> peers;
+    private int numPatrols;
+    private int numSystems;
+    private long instanceHash;
+    private Map<Integer, double[]> observations; // Islands reporting, best comfort and events of every observation
+    private Map<Integer, QuantileSketch> observationSketches; // Comfort of the populations of every observation
+    private float bestEverComfort;
+    private int[] bestEverGenes;
+    private int bestEverIsland;
+    private int finishedCount;
+    private int droppedCount;
+
+    /**
+     * A connected island.
+     */
+    private static class Peer {
+        private int number;
+        private Socket socket;
+        private DataOutputStream out;
+        private volatile boolean alive = true;
+    }
+
+    /**
+     * Constructor for IslandCoordinator.
+     *
+     * @param port the port to listen on
+     * @param expectedIslands the number of islands taking part
+     * @param out the stream the progress and the summary are printed to
+     */
+    public IslandCoordinator(int port, int expectedIslands, PrintStream out) {
+        this.port = port;
+        this.expectedIslands = expectedIslands;
+        this.out = out;
+        this.peers = new CopyOnWriteArrayList<>();
+        this.observations = new TreeMap<>();
+        this.observationSketches = new TreeMap<>();
+        this.bestEverComfort = -1;
+    }
+
+    /**
+     * This method accepts the islands, relays their elites until every one of them has finished or
+     * dropped out, and prints the summary of the run.
+     *
+     * @return true if the coordinator ran, false if the port could not be opened
+     */
+    public boolean run() {
+        List<Thread> readers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout(JOIN_TIMEOUT);
+            out.println("Coordinator listening on port " + server.getLocalPort() + " for " + expectedIslands + " island(s).");
+            while (readers.size() < expectedIslands) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    out.println("No island joined for " + JOIN_TIMEOUT / 1000 + " seconds; going on with " + readers.size() + ".");
+                    break;
+                }
+                socket.setTcpNoDelay(true);
+                Peer peer = new Peer();
+                peer.number = readers.size() + 1;
+                peer.socket = socket;
+                Thread reader = new Thread(() -> serve(peer), "coordinator-" + peer.number);
+                reader.start();
+                readers.add(reader);
+            }
+        } catch (IOException e) {
+            out.println("Cannot listen on port " + port + ": " + e.getMessage());
+            return false;
+        }
+
+        for (Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        printSummary(readers.size());
+        return true;
+    }
+
+    /**
+     * This method is the loop of the thread serving an island: it checks the instance of the island,
+     * then records and relays its elites until it finishes or drops out.
+     *
+     * @param peer the island served
+     */
+    private void serve(Peer peer) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(peer.socket.getInputStream()));
+            peer.out = new DataOutputStream(new BufferedOutputStream(peer.socket.getOutputStream()));
+
+            if (in.readByte() != IslandNode.HELLO || !join(peer, in.readInt(), in.readInt(), in.readLong())) {
+                synchronized (peer) {
+                    peer.out.writeByte(IslandNode.REJECT);
+                    peer.out.flush();
+                }
+                out.println("Island " + peer.number + " refused: its instance does not match.");
+                peer.socket.close();
+                return;
+            }
+            synchronized (peer) {
+                peer.out.writeByte(IslandNode.ACCEPT);
+                peer.out.writeInt(peer.number);
+                peer.out.flush();
+            }
+            peers.add(peer);
+            out.println("Island " + peer.number + " joined.");
+
+            int width = IslandNode.geneWidth(numPatrols);
+            while (true) {
+                byte message = in.readByte();
+                if (message == IslandNode.DONE) {
+                    synchronized (this) {
+                        finishedCount++;
+                    }
+                    out.println("Island " + peer.number + " finished.");
+                    break;
+                }
+                if (message != IslandNode.ELITES) {
+                    throw new IOException("unexpected message");
+                }
+
+                int observationNumber = in.readInt();
+                in.readFloat(); // Simulated time of the observation
+                int eventCount = in.readInt();
+                int count = in.readInt();
+                List<int[]> elites = new ArrayList<>(count);
+                float bestComfort = 0;
+                for (int i = 0; i < count; i++) {
+                    float comfort = in.readFloat();
+                    int[] genes = IslandNode.readGenes(in, numSystems, width);
+                    elites.add(genes);
+                    bestComfort = Math.max(bestComfort, comfort);
+                    record(peer, comfort, genes);
+                }
+                QuantileSketch comfortSketch = in.readBoolean() ? QuantileSketch.readFrom(in) : null;
+                record(observationNumber, bestComfort, eventCount, comfortSketch);
+                relay(peer, elites, width);
+            }
+        } catch (EOFException e) {
+            drop(peer, "closed the connection");
+        } catch (IOException e) {
+            drop(peer, e.getMessage());
+        } finally {
+            peers.remove(peer);
+            peer.alive = false;
+            try {
+                peer.socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    /**
+     * This method checks the instance of a joining island; the first island fixes the instance.
+     *
+     * @param peer the joining island
+     * @param patrols the number of patrols of its instance
+     * @param systems the number of systems of its instance
+     * @param hash the hash of its instance, see SolutionArchive.instanceHash
+     * @return true if the island runs the same instance as the others
+     */
+    private synchronized boolean join(Peer peer, int patrols, int systems, long hash) {
+        if (numPatrols == 0) {
+            numPatrols = patrols;
+            numSystems = systems;
+            instanceHash = hash;
+        }
+        return patrols == numPatrols && systems == numSystems && hash == instanceHash && patrols > 0;
+    }
+
+    private synchronized void record(Peer peer, float comfort, int[] genes) {
+        if (comfort > bestEverComfort) {
+            bestEverComfort = comfort;
+            bestEverGenes = genes;
+            bestEverIsland = peer.number;
+            out.println("New global best ever from island " + peer.number + ": comfort " + comfort + ".");
+        }
+    }
+
+    private synchronized void record(int observationNumber, float bestComfort, int eventCount, QuantileSketch comfortSketch) {
+        double[] summary = observations.computeIfAbsent(observationNumber, k -> new double[3]);
+        summary[0]++;
+        summary[1] = Math.max(summary[1], bestComfort);
+        summary[2] += eventCount;
+        if (comfortSketch != null) {
+            QuantileSketch merged = observationSketches.get(observationNumber);
+            if (merged == null) {
+                observationSketches.put(observationNumber, comfortSketch);
+            } else if (merged.getAlpha() == comfortSketch.getAlpha()) {
+                merged.merge(comfortSketch);
+            }
+        }
+    }
+
+    /**
+     * This method sends the elites of an island to every other island still connected. An island
+     * that cannot be written to is dropped.
+     *
+     * @param from the island the elites come from
+     * @param elites the patrol of every system of each elite
+     * @param width the number of bytes of every patrol
+     */
+    private void relay(Peer from, List<int[]> elites, int width) {
+        for (Peer peer : peers) {
+            if (peer == from || !peer.alive) {
+                continue;
+            }
+            try {
+                synchronized (peer) {
+                    peer.out.writeByte(IslandNode.MIGRANTS);
+                    peer.out.writeInt(from.number);
+                    peer.out.writeInt(elites.size());
+                    for (int[] genes : elites) {
+                        IslandNode.writeGenes(peer.out, genes, width);
+                    }
+                    peer.out.flush();
+                }
+            } catch (IOException e) {
+                // The reader of that island notices the closed socket and drops it
+                peer.alive = false;
+                peers.remove(peer);
+                try {
+                    peer.socket.close();
+                } catch (IOException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+    }
+
+    private synchronized void drop(Peer peer, String reason) {
+        droppedCount++;
+        out.println("Island " + peer.number + " dropped out (" + reason + ").");
+    }
+
+    /**
+     * This method prints, for every observation, the islands that reported it, their best comfort,
+     * their total events and the quantiles of the comfort of their populations, followed by the
+     * global best ever distribution.
+     *
+     * @param joinedCount the number of islands that connected
+     */
+    private synchronized void printSummary(int joinedCount) {
+        out.println("Islands: " + joinedCount + " joined, " + finishedCount + " finished, " + droppedCount + " dropped out");
+        out.println(String.format("%-12s %8s %14s %12s %30s", "observation", "islands", "best comfort", "events", "comfort p10/p50/p90"));
+        for (Map.Entry<Integer, double[]> entry : observations.entrySet()) {
+            double[] summary = entry.getValue();
+            QuantileSketch comfortSketch = observationSketches.get(entry.getKey());
+            String quantiles = comfortSketch == null ? "-" : String.format("%.6f/%.6f/%.6f",
+                    comfortSketch.getQuantile(0.1), comfortSketch.getQuantile(0.5), comfortSketch.getQuantile(0.9));
+            out.println(String.format("%-12d %8d %14.6f %12d %30s", entry.getKey(), (int) summary[0], summary[1], (long) summary[2], quantiles));
+        }
+        if (bestEverGenes == null) {
+            out.println("No island reported an observation.");
+            return;
+        }
+
+        List<List<Integer>> distribution = new ArrayList<>(numPatrols);
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            distribution.add(new ArrayList<>());
+        }
+        for (int system = 0; system < bestEverGenes.length; system++) {
+            distribution.get(bestEverGenes[system]).add(system);
+        }
+        out.println("Global best ever distribution of the patrols: " + SimulationObserver.formatDistribution(distribution));
+        out.println("Comfort: " + bestEverComfort + " (island " + bestEverIsland + ")");
+    }
+}
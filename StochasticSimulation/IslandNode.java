@@ -0,0 +1,357 @@
+package StochasticSimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents a simulation process taking part in a distributed island model.
+ *
+ * The IslandNode class is an observer that connects the simulation of its process, an island, to an
+ * IslandCoordinator over TCP. At every observation it sends the coordinator a summary of the island
+ * and its elite individuals, the five best distinct distributions of the population and the best ever
+ * one, along with the quantile sketch of the comfort of its population, and adds to the population the elites the other islands sent in the meantime, which a reader
+ * thread collects as they arrive. Distributions travel as the patrol of every system, one, two or four
+ * bytes per system depending on the number of patrols, and are evaluated again by the island receiving them.
+ * An immigrant is only added if every system is in a patrol that can reach it, as for the archived ones.
+ *
+ * Islands join with the size and the hash of their instance (see SolutionArchive.instanceHash), so the
+ * coordinator refuses an island whose times or reachable pairs differ from the other ones.
+ *
+ * If the coordinator cannot be reached, or goes away, the island goes on alone.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class IslandNode extends Observer {
+    /**
+     * Message of an island joining, with the number of patrols and systems and the hash of its instance.
+     */
+    static final byte HELLO = 'H';
+    /**
+     * Reply of the coordinator accepting an island, with the number it was given.
+     */
+    static final byte ACCEPT = 'A';
+    /**
+     * Reply of the coordinator refusing an island whose instance does not match the other ones.
+     */
+    static final byte REJECT = 'R';
+    /**
+     * Summary and elites of an island at an observation.
+     */
+    static final byte ELITES = 'E';
+    /**
+     * Elites of another island, relayed by the coordinator.
+     */
+    static final byte MIGRANTS = 'M';
+    /**
+     * Message of an island whose simulation has finished.
+     */
+    static final byte DONE = 'D';
+    /**
+     * Longest wait, in milliseconds, to connect to the coordinator.
+     */
+    private static final int CONNECT_TIMEOUT = 5000;
+    /**
+     * Largest number of immigrants added to the population at a single observation.
+     */
+    private static final int MAX_IMMIGRANTS = 20;
+
+    private Socket socket;
+    private DataOutputStream out;
+    private int numPatrols;
+    private int numSystems;
+    private int width;
+    private int islandNumber;
+    private volatile boolean connected;
+    private ConcurrentLinkedQueue<int[]> immigrants;
+    private int sentCount;
+    private int receivedCount;
+
+    /**
+     * Constructor for IslandNode.
+     *
+     * @param socket the socket connected to the coordinator, already accepted
+     * @param in the input stream of the socket
+     * @param out the output stream of the socket
+     * @param numPatrols the number of patrols of the instance
+     * @param numSystems the number of systems of the instance
+     * @param islandNumber the number the coordinator gave the island
+     */
+    private IslandNode(Socket socket, DataInputStream in, DataOutputStream out, int numPatrols, int numSystems, int islandNumber) {
+        this.socket = socket;
+        this.out = out;
+        this.numPatrols = numPatrols;
+        this.numSystems = numSystems;
+        this.width = geneWidth(numPatrols);
+        this.islandNumber = islandNumber;
+        this.connected = true;
+        this.immigrants = new ConcurrentLinkedQueue<>();
+
+        Thread reader = new Thread(() -> receive(in), "island-" + islandNumber);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * This method connects an island to the coordinator and joins the island model.
+     *
+     * @param host the host of the coordinator
+     * @param port the port of the coordinator
+     * @param matrix the dense matrix of the instance, or null
+     * @param sparseMatrix the sparse matrix of the instance, or null if the matrix is dense
+     * @return the island, or null if the coordinator cannot be reached or refuses it
+     */
+    public static IslandNode connect(String host, int port, int[][] matrix, SparseMatrix sparseMatrix) {
+        int numPatrols = sparseMatrix != null ? sparseMatrix.getN() : matrix.length;
+        int numSystems = sparseMatrix != null ? sparseMatrix.getM() : matrix[0].length;
+        long instanceHash = SolutionArchive.instanceHash(matrix, sparseMatrix);
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            out.writeByte(HELLO);
+            out.writeInt(numPatrols);
+            out.writeInt(numSystems);
+            out.writeLong(instanceHash);
+            out.flush();
+
+            if (in.readByte() != ACCEPT) {
+                System.out.println("The coordinator at " + host + ":" + port + " runs a different instance; running alone.");
+                socket.close();
+                return null;
+            }
+            return new IslandNode(socket, in, out, numPatrols, numSystems, in.readInt());
+        } catch (IOException e) {
+            System.out.println("Cannot join the coordinator at " + host + ":" + port + " (" + e.getMessage() + "); running alone.");
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+            return null;
+        }
+    }
+
+    /**
+     * This method sends the summary and the elites of the island, then adds the immigrants received
+     * since the previous observation to the population.
+     */
+    @Override
+    public void update(int observationNumber, float currentTime, int eventCount, int epidemicCount, Population population) {
+        Individual bestIndividual = population.getBestIndividual();
+        if (bestIndividual == null) {
+            return;
+        }
+
+        if (connected) {
+            sendElites(observationNumber, currentTime, eventCount, population);
+        }
+
+        int added = 0;
+        int[] genes;
+        while ((genes = immigrants.poll()) != null) {
+            if (added == MAX_IMMIGRANTS) {
+                continue;
+            }
+            if (!Population.isAssignable(bestIndividual, genes)) {
+                continue;
+            }
+            population.addIndividual(bestIndividual.createChild(toDistribution(genes)));
+            added++;
+        }
+        receivedCount += added;
+    }
+
+    @Override
+    public void update_restart_counter(int restartNum) {
+        // Restarts are local to every island
+    }
+
+    /**
+     * This method sends an observation of the island: its summary, the best ever individual and the
+     * top distributions of the population, each one with its comfort, and the comfort sketch of the
+     * population if it keeps one.
+     *
+     * @param observationNumber the number of the observation
+     * @param currentTime the current time in the simulation
+     * @param eventCount the number of events that have occurred
+     * @param population the population of the island
+     */
+    private void sendElites(int observationNumber, float currentTime, int eventCount, Population population) {
+        List<Individual> elites = new ArrayList<>();
+        elites.add(population.getBestEverIndividual());
+        for (Individual individual : population.getTopDistributions()) {
+            if (individual != population.getBestEverIndividual()) {
+                elites.add(individual);
+            }
+        }
+
+        int[] genes = new int[numSystems];
+        try {
+            out.writeByte(ELITES);
+            out.writeInt(observationNumber);
+            out.writeFloat(currentTime);
+            out.writeInt(eventCount);
+            out.writeInt(elites.size());
+            for (Individual elite : elites) {
+                elite.fillPatrolOfSystem(genes);
+                out.writeFloat(elite.getComfortLevel());
+                writeGenes(out, genes, width);
+            }
+            QuantileSketch comfortSketch = population.getComfortSketch();
+            out.writeBoolean(comfortSketch != null);
+            if (comfortSketch != null) {
+                comfortSketch.writeTo(out);
+            }
+            out.flush();
+            sentCount += elites.size();
+        } catch (IOException e) {
+            disconnect("Lost the coordinator (" + e.getMessage() + "); the island goes on alone.");
+        }
+    }
+
+    /**
+     * This method is the loop of the reader thread, which queues the migrants relayed by the
+     * coordinator until the connection is closed.
+     *
+     * @param in the input stream of the socket
+     */
+    private void receive(DataInputStream in) {
+        try {
+            while (connected) {
+                if (in.readByte() != MIGRANTS) {
+                    throw new IOException("unexpected message");
+                }
+                in.readInt(); // Island the migrants come from
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    immigrants.add(readGenes(in, numSystems, width));
+                }
+            }
+        } catch (EOFException e) {
+            disconnect("The coordinator closed the connection; the island goes on alone.");
+        } catch (IOException e) {
+            disconnect("Lost the coordinator (" + e.getMessage() + "); the island goes on alone.");
+        }
+    }
+
+    private List<List<Integer>> toDistribution(int[] genes) {
+        List<List<Integer>> distribution = new ArrayList<>(numPatrols);
+        for (int patrol = 0; patrol < numPatrols; patrol++) {
+            distribution.add(new ArrayList<>());
+        }
+        for (int system = 0; system < genes.length; system++) {
+            distribution.get(genes[system]).add(system);
+        }
+        return distribution;
+    }
+
+    /**
+     * This method tells the coordinator the simulation has finished and closes the connection.
+     */
+    public void close() {
+        if (connected) {
+            try {
+                out.writeByte(DONE);
+                out.flush();
+            } catch (IOException e) {
+                // The coordinator is already gone
+            }
+        }
+        connected = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private synchronized void disconnect(String message) {
+        if (connected) {
+            connected = false;
+            System.out.println(message);
+        }
+    }
+
+    public int getIslandNumber() {
+        return islandNumber;
+    }
+
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    public int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * This method returns the number of bytes used for the patrol of every system.
+     *
+     * @param numPatrols the number of patrols of the instance
+     * @return 1, 2 or 4
+     */
+    static int geneWidth(int numPatrols) {
+        if (numPatrols <= 256) {
+            return 1;
+        }
+        return numPatrols <= 65536 ? 2 : 4;
+    }
+
+    /**
+     * This method writes the patrol of every system.
+     *
+     * @param out the stream to write to
+     * @param genes the patrol of every system
+     * @param width the number of bytes of every patrol, as returned by geneWidth
+     * @throws IOException if the stream cannot be written
+     */
+    static void writeGenes(DataOutputStream out, int[] genes, int width) throws IOException {
+        for (int patrol : genes) {
+            if (width == 1) {
+                out.writeByte(patrol);
+            } else if (width == 2) {
+                out.writeShort(patrol);
+            } else {
+                out.writeInt(patrol);
+            }
+        }
+    }
+
+    /**
+     * This method reads the patrol of every system.
+     *
+     * @param in the stream to read from
+     * @param numSystems the number of systems
+     * @param width the number of bytes of every patrol, as returned by geneWidth
+     * @return the patrol of every system
+     * @throws IOException if the stream cannot be read
+     */
+    static int[] readGenes(DataInputStream in, int numSystems, int width) throws IOException {
+        int[] genes = new int[numSystems];
+        for (int system = 0; system < numSystems; system++) {
+            if (width == 1) {
+                genes[system] = in.readUnsignedByte();
+            } else if (width == 2) {
+                genes[system] = in.readUnsignedShort();
+            } else {
+                genes[system] = in.readInt();
+            }
+        }
+        return genes;
+    }
+}
@@ -0,0 +1,274 @@
+package StochasticSimulation;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the change-only encoding of the distributions printed by the observers.
+ *
+ * The ObservationCompressor class remembers the distributions printed in the previous and the
+ * current observation, each one under a slot name (best, bestever, top1 to top5). A distribution
+ * identical to a remembered one is printed as a back-reference "= 3/best", one that differs from
+ * the same slot of the previous observation by a few moved systems is printed as a diff
+ * "~ 3/best [12:3>5 40:1>2]" (system 12 moved from patrol 3 to patrol 5, in 1-based indices),
+ * and any other one is printed in full. The diff is only used when applying it reproduces the
+ * exact printed form, so the expand method can always convert a compact log back to the full one.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ObservationCompressor {
+    private Map<String, List<List<Integer>>> previous;
+    private Map<String, List<List<Integer>>> current;
+    private int previousObservation;
+    private int currentObservation;
+
+    /**
+     * Constructor for ObservationCompressor.
+     */
+    public ObservationCompressor() {
+        this.previous = new LinkedHashMap<>();
+        this.current = new LinkedHashMap<>();
+    }
+
+    /**
+     * This method starts a new observation; the distributions of the current one become the previous ones.
+     *
+     * @param observationNumber the number of the new observation
+     */
+    public void beginObservation(int observationNumber) {
+        if (!current.isEmpty()) {
+            previous = current;
+            previousObservation = currentObservation;
+            current = new LinkedHashMap<>();
+        }
+        currentObservation = observationNumber;
+    }
+
+    /**
+     * This method returns the compact form of a distribution and remembers it under the given slot.
+     *
+     * @param slot the name of the slot the distribution is printed in
+     * @param distribution the distribution to print
+     * @return a back-reference, a diff or the full distribution
+     */
+    public String describe(String slot, List<List<Integer>> distribution) {
+        String description = null;
+
+        // Back-reference to the previous observation, same slot first, or to an earlier slot of this one
+        List<List<Integer>> sameSlot = previous.get(slot);
+        if (distribution.equals(sameSlot)) {
+            description = "= " + previousObservation + "/" + slot;
+        }
+        for (Map.Entry<String, List<List<Integer>>> entry : previous.entrySet()) {
+            if (description == null && distribution.equals(entry.getValue())) {
+                description = "= " + previousObservation + "/" + entry.getKey();
+            }
+        }
+        for (Map.Entry<String, List<List<Integer>>> entry : current.entrySet()) {
+            if (description == null && distribution.equals(entry.getValue())) {
+                description = "= " + currentObservation + "/" + entry.getKey();
+            }
+        }
+
+        if (description == null && sameSlot != null && sameSlot.size() == distribution.size()) {
+            String moves = diff(sameSlot, distribution);
+            if (moves != null) {
+                description = "~ " + previousObservation + "/" + slot + " [" + moves + "]";
+            }
+        }
+
+        if (description == null) {
+            description = SimulationObserver.formatDistribution(distribution);
+        }
+
+        current.put(slot, distribution);
+        return description;
+    }
+
+    /**
+     * This method computes the systems moved between two distributions, listed in the order they
+     * appear in the target patrols, so that removing each one from its old patrol and appending it
+     * to its new one reproduces the target exactly.
+     *
+     * @param reference the distribution the diff is applied to
+     * @param target the distribution the diff must produce
+     * @return the moves as "system:from>to" separated by spaces, or null if a diff would not be exact or not shorter
+     */
+    private static String diff(List<List<Integer>> reference, List<List<Integer>> target) {
+        Map<Integer, Integer> referencePatrol = new HashMap<>();
+        for (int patrol = 0; patrol < reference.size(); patrol++) {
+            for (int system : reference.get(patrol)) {
+                referencePatrol.put(system, patrol);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        List<int[]> moves = new ArrayList<>();
+        for (int patrol = 0; patrol < target.size(); patrol++) {
+            for (int system : target.get(patrol)) {
+                Integer from = referencePatrol.get(system);
+                if (from == null) {
+                    return null;
+                }
+                if (from != patrol) {
+                    moves.add(new int[] { system, from, patrol });
+                }
+            }
+        }
+        if (moves.isEmpty() || moves.size() * 2 > referencePatrol.size()) {
+            return null;
+        }
+
+        for (int[] move : moves) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(move[0] + 1).append(':').append(move[1] + 1).append('>').append(move[2] + 1);
+        }
+
+        String moveList = sb.toString();
+        return target.equals(applyDiff(reference, moveList)) ? moveList : null;
+    }
+
+    /**
+     * This method applies a list of moves to a copy of a distribution.
+     *
+     * @param reference the distribution the moves are applied to
+     * @param moveList the moves as "system:from>to" separated by spaces, in 1-based indices
+     * @return the resulting distribution
+     */
+    private static List<List<Integer>> applyDiff(List<List<Integer>> reference, String moveList) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (List<Integer> patrol : reference) {
+            result.add(new ArrayList<>(patrol));
+        }
+        for (String move : moveList.trim().split("\\s+")) {
+            int colon = move.indexOf(':');
+            int arrow = move.indexOf('>');
+            Integer system = Integer.parseInt(move.substring(0, colon)) - 1;
+            int from = Integer.parseInt(move.substring(colon + 1, arrow)) - 1;
+            int to = Integer.parseInt(move.substring(arrow + 1)) - 1;
+            result.get(from).remove(system);
+            result.get(to).add(system);
+        }
+        return result;
+    }
+
+    /**
+     * This method parses a distribution printed in full form, such as {{1,2},{},{3}}.
+     *
+     * @param text the printed distribution
+     * @return the distribution, with 0-based systems
+     */
+    public static List<List<Integer>> parseDistribution(String text) {
+        List<List<Integer>> distribution = new ArrayList<>();
+        String inner = text.trim();
+        inner = inner.substring(1, inner.length() - 1);
+        int position = 0;
+        while ((position = inner.indexOf('{', position)) >= 0) {
+            int end = inner.indexOf('}', position);
+            List<Integer> patrol = new ArrayList<>();
+            String systems = inner.substring(position + 1, end);
+            if (!systems.isEmpty()) {
+                for (String system : systems.split(",")) {
+                    patrol.add(Integer.parseInt(system) - 1);
+                }
+            }
+            distribution.add(patrol);
+            position = end + 1;
+        }
+        return distribution;
+    }
+
+    /**
+     * This method converts a compact observation log back to the full form.
+     *
+     * @param in the compact log
+     * @param out the stream the full log is written to
+     * @throws IOException if the log cannot be read
+     */
+    public static void expand(BufferedReader in, PrintStream out) throws IOException {
+        Map<String, List<List<Integer>>> known = new HashMap<>();
+        int observation = 0;
+        int topRank = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            String trimmed = line.trim();
+
+            if (trimmed.startsWith("Observation ") && trimmed.endsWith(":")) {
+                observation = Integer.parseInt(trimmed.substring(12, trimmed.length() - 1));
+                topRank = 0;
+                // Only the previous observation can be referenced
+                final int oldest = observation - 1;
+                known.keySet().removeIf(key -> Integer.parseInt(key.substring(0, key.indexOf('/'))) < oldest);
+                out.println(line);
+                continue;
+            }
+
+            String prefix;
+            String slot;
+            String body;
+            String suffix = "";
+            int labelEnd = line.indexOf(": ");
+            if (trimmed.startsWith("Best distribution of the patrols: ")) {
+                slot = "best";
+                prefix = line.substring(0, labelEnd + 2);
+                body = line.substring(labelEnd + 2);
+            } else if (trimmed.startsWith("Best ever distribution of the patrols: ")) {
+                slot = "bestever";
+                prefix = line.substring(0, labelEnd + 2);
+                body = line.substring(labelEnd + 2);
+            } else if (trimmed.startsWith("{") || trimmed.startsWith("= ") || trimmed.startsWith("~ ")) {
+                slot = "top" + (++topRank);
+                int indent = line.indexOf(trimmed.charAt(0));
+                prefix = line.substring(0, indent);
+                int metrics = line.indexOf(" : ");
+                body = metrics < 0 ? line.substring(indent) : line.substring(indent, metrics);
+                suffix = metrics < 0 ? "" : line.substring(metrics);
+            } else {
+                out.println(line);
+                continue;
+            }
+
+            List<List<Integer>> distribution;
+            if (body.startsWith("= ")) {
+                distribution = known.get(body.substring(2).trim());
+            } else if (body.startsWith("~ ")) {
+                int bracket = body.indexOf('[');
+                List<List<Integer>> reference = known.get(body.substring(2, bracket).trim());
+                distribution = applyDiff(reference, body.substring(bracket + 1, body.lastIndexOf(']')));
+            } else {
+                distribution = parseDistribution(body);
+            }
+
+            known.put(observation + "/" + slot, distribution);
+            out.println(prefix + SimulationObserver.formatDistribution(distribution) + suffix);
+        }
+    }
+
+    /**
+     * This method expands a compact observation log, printing the full form to the standard output.
+     *
+     * @param args the path of the compact log
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java StochasticSimulation.ObservationCompressor <compact log>");
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            expand(in, System.out);
+        } catch (IOException e) {
+            System.out.println("Error reading the log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package StochasticSimulation;
+
+import java.util.Random;
+
+/**
+ * This interface represents an evolution event that makes one child of the best individual.
+ *
+ * The OffspringEvent interface lets the child be built without being added to the population,
+ * so that several candidate children of the same parent can be built and compared before any of
+ * them is admitted (see Events.BatchOffspringEvent).
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public interface OffspringEvent extends EvolutionEvent {
+    /**
+     * This method builds and evaluates a child of the given parent without adding it to the population.
+     * It only reads the parent, so several children of the same parent can be built concurrently.
+     *
+     * @param parent the individual the child is made from
+     * @param random the random object used for stochastic processes
+     * @return the new individual
+     */
+    Individual createChild(Individual parent, Random random);
+}
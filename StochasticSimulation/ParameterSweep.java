@@ -0,0 +1,239 @@
+package StochasticSimulation;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import Parser.SimulationParameters;
+import Parser.SweepParameters;
+
+/**
+ * This class represents a sweep over the parameters of the simulation.
+ *
+ * The ParameterSweep class runs every combination of the mu, rho, delta, v and vMax
+ * grids of a SweepParameters object, several replicas each, on a work-stealing pool.
+ * All runs share the matrix of the instance. A run whose best ever comfort falls clearly
+ * behind the best comfort seen by any run at the same observation is stopped early and
+ * its cell is marked as pruned.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class ParameterSweep {
+    /**
+     * Number of observations made by every run of the simulation.
+     */
+    private static final int OBSERVATIONS = 20;
+
+    private SweepParameters sweep;
+    private ForkJoinPool pool;
+    private float[] leaderComfort;
+
+    /**
+     * Constructor for ParameterSweep.
+     *
+     * @param sweep the grids, replicas and pruning ratio of the sweep
+     * @param parallelism the number of worker threads of the pool
+     */
+    public ParameterSweep(SweepParameters sweep, int parallelism) {
+        this.sweep = sweep;
+        this.pool = new ForkJoinPool(parallelism);
+        this.leaderComfort = new float[OBSERVATIONS + 2];
+    }
+
+    /**
+     * This method runs the Cartesian product of the grids and waits for every run to finish.
+     * Cells whose initial population is not smaller than the maximum population are skipped.
+     *
+     * @return the results of every valid cell, in grid order
+     */
+    public List<CellResult> run() {
+        List<CellResult> cells = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        long seed = sweep.getSeed();
+
+        for (int mu : sweep.getMuValues()) {
+            for (int rho : sweep.getRhoValues()) {
+                for (int delta : sweep.getDeltaValues()) {
+                    for (int v : sweep.getVValues()) {
+                        for (int vMax : sweep.getVMaxValues()) {
+                            if (v >= vMax) {
+                                continue;
+                            }
+                            CellResult cell = new CellResult(sweep.createCell(mu, rho, delta, v, vMax));
+                            cells.add(cell);
+                            for (int replica = 0; replica < sweep.getReplicas(); replica++) {
+                                long replicaSeed = seed++;
+                                tasks.add(pool.submit(() -> runReplica(cell, replicaSeed)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        pool.shutdown();
+        return cells;
+    }
+
+    /**
+     * This method runs a single replica of a cell, unless the cell has already been pruned.
+     *
+     * @param cell the cell the replica belongs to
+     * @param seed the seed of the replica's random object
+     */
+    private void runReplica(CellResult cell, long seed) {
+        if (cell.isPruned()) {
+            return;
+        }
+
+        Simulation simulation = new Simulation(cell.getParameters(), new Random(seed), false);
+        simulation.addObserver(new PruningObserver(simulation, cell));
+
+        long startTime = System.nanoTime();
+        simulation.run();
+        long elapsed = System.nanoTime() - startTime;
+
+        Individual bestEver = simulation.getPopulation().getBestEverIndividual();
+        float comfort = bestEver == null ? 0 : bestEver.getComfortLevel();
+        float eventsPerSecond = simulation.getEventCount() / Math.max(elapsed / 1e9f, 1e-9f);
+        // O instante do melhor de sempre é tempo simulado; só os eventos por segundo usam o relógio
+        cell.addReplica(comfort, simulation.getBestEverTime(), eventsPerSecond);
+    }
+
+    /**
+     * This method records the comfort reached at an observation and tells whether it trails
+     * the best comfort reached by any run at that same observation by more than the pruning ratio.
+     * Only the second half of the observations is considered, so that every run gets a fair start.
+     *
+     * @param observationNumber the number of the observation
+     * @param comfort the best ever comfort of the run at that observation
+     * @return true if the run clearly underperforms and should stop
+     */
+    private synchronized boolean isUnderperforming(int observationNumber, float comfort) {
+        int index = Math.min(observationNumber, leaderComfort.length - 1);
+        if (comfort > leaderComfort[index]) {
+            leaderComfort[index] = comfort;
+        }
+        return observationNumber > OBSERVATIONS / 2 && comfort < sweep.getPruneRatio() * leaderComfort[index];
+    }
+
+    /**
+     * This method prints the results table of a sweep. The sim-time-to-best column is the mean
+     * simulated time at which the replicas found their best ever individual, in the time units of
+     * tau, not wall time; the wall time only enters the events/s column.
+     *
+     * @param cells the results of the cells
+     * @param out the stream the table is printed to
+     */
+    public static void printTable(List<CellResult> cells, PrintStream out) {
+        out.println(String.format("%6s %6s %6s %6s %6s %5s %12s %12s %16s %12s  %s",
+                "mu", "rho", "delta", "v", "vMax", "runs", "best", "mean", "sim-time-to-best", "events/s", "status"));
+        for (CellResult cell : cells) {
+            SimulationParameters p = cell.getParameters();
+            out.println(String.format("%6d %6d %6d %6d %6d %5d %12.6f %12.6f %16.3f %12.0f  %s",
+                    p.getMu(), p.getRho(), p.getDelta(), p.getV(), p.getVMax(), cell.getReplicas(),
+                    cell.getBestComfort(), cell.getMeanComfort(), cell.getMeanTimeToBest(),
+                    cell.getMeanEventsPerSecond(), cell.isPruned() ? "pruned" : "complete"));
+        }
+    }
+
+    /**
+     * This class accumulates the results of the replicas of one cell of the sweep.
+     */
+    public static class CellResult {
+        private SimulationParameters parameters;
+        private int replicas;
+        private float bestComfort;
+        private float comfortSum;
+        private float timeToBestSum;
+        private float eventsPerSecondSum;
+        private volatile boolean pruned;
+
+        /**
+         * Constructor for CellResult.
+         *
+         * @param parameters the parameters of the cell
+         */
+        public CellResult(SimulationParameters parameters) {
+            this.parameters = parameters;
+        }
+
+        private synchronized void addReplica(float comfort, float timeToBest, float eventsPerSecond) {
+            replicas++;
+            bestComfort = Math.max(bestComfort, comfort);
+            comfortSum += comfort;
+            timeToBestSum += timeToBest;
+            eventsPerSecondSum += eventsPerSecond;
+        }
+
+        private void prune() {
+            pruned = true;
+        }
+
+        public SimulationParameters getParameters() {
+            return parameters;
+        }
+
+        public synchronized int getReplicas() {
+            return replicas;
+        }
+
+        public synchronized float getBestComfort() {
+            return bestComfort;
+        }
+
+        public synchronized float getMeanComfort() {
+            return replicas == 0 ? 0 : comfortSum / replicas;
+        }
+
+        /**
+         * This method returns the mean simulated time at which the replicas found their best ever individual.
+         *
+         * @return the mean simulated time to the best, 0 if no replica has finished
+         */
+        public synchronized float getMeanTimeToBest() {
+            return replicas == 0 ? 0 : timeToBestSum / replicas;
+        }
+
+        public synchronized float getMeanEventsPerSecond() {
+            return replicas == 0 ? 0 : eventsPerSecondSum / replicas;
+        }
+
+        public boolean isPruned() {
+            return pruned;
+        }
+    }
+
+    /**
+     * This observer stops its simulation, and prunes its cell, when the run clearly underperforms.
+     */
+    private class PruningObserver extends Observer {
+        private Simulation simulation;
+        private CellResult cell;
+
+        private PruningObserver(Simulation simulation, CellResult cell) {
+            this.simulation = simulation;
+            this.cell = cell;
+        }
+
+        @Override
+        public void update(int observationNumber, float currentTime, int eventCount, int epidemicCount, Population population) {
+            Individual bestEver = population.getBestEverIndividual();
+            if (bestEver != null && isUnderperforming(observationNumber, bestEver.getComfortLevel())) {
+                cell.prune();
+                simulation.requestStop();
+            }
+        }
+
+        @Override
+        public void update_restart_counter(int restartNum) {
+        }
+    }
+}
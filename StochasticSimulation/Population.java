@@ -1,12 +1,16 @@
 package StochasticSimulation;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Random;
 
+import Parser.SparseMatrix;
+
 public class Population {
     private List<Individual> individuals;
     private int maxPopulationSize;
@@ -15,28 +19,156 @@ public class Population {
     private List<Individual> topDistributions;
     private Set<String> allTimeTopDistributionsSet;
     private List<Individual> allTimeTopDistributions;
+    private int lastInsertionIndex; // Posição do último indivíduo inserido
+    private int lastRemovalIndex; // Posição do último indivíduo removido
+    private IndividualArena arena; // Nula fora do modo arena
+    private List<Individual> pendingIndividuals; // Filhos do salto em curso, nulo fora de um salto
+    private AdmissionPolicy admissionPolicy; // Nula se todos os indivíduos forem admitidos
+    private DiversityTracker diversityTracker; // Nulo se a diversidade não for acompanhada
+    private QuantileSketch comfortSketch; // Nulo se os quantis não forem acompanhados
+    private QuantileSketch patrolTimeSketch;
+    private Telemetry telemetry; // Nula se a telemetria estiver desligada
+    private Telemetry.Counter topDistributionsCounter;
+
+    // Com a avaliação em bloco, os indivíduos aleatórios iniciais e dos reinícios são avaliados juntos
+    public Population(int initialSize, int maxPopulationSize, int[][] matrix, boolean batchEvaluated, Random random) {
+        this(maxPopulationSize);
+        if (initialSize > 0) {
+            Individual first = new Individual(matrix, random);
+            first.setBatchEvaluated(batchEvaluated);
+            populate(first, initialSize, random);
+        }
+    }
+
+    public Population(int initialSize, int maxPopulationSize, SparseMatrix sparseMatrix, Random random) {
+        this(maxPopulationSize);
+        if (initialSize > 0) {
+            populate(new Individual(sparseMatrix, random), initialSize, random);
+        }
+    }
+
+    // Modo arena: as distribuições ficam fora do heap, matrix ou sparseMatrix é nula
+    public Population(int initialSize, int maxPopulationSize, int[][] matrix, SparseMatrix sparseMatrix, IndividualArena arena, Random random) {
+        this(maxPopulationSize);
+        this.arena = arena;
+        if (initialSize > 0) {
+            populate(new ArenaIndividual(matrix, sparseMatrix, arena, random), initialSize, random);
+        }
+    }
 
-    public Population(int initialSize, int maxPopulationSize, int[][] matrix, Random random) {
+    protected Population(int maxPopulationSize) {
         this.maxPopulationSize = maxPopulationSize;
         this.individuals = new ArrayList<>();
         this.topDistributions = new ArrayList<>();
         this.allTimeTopDistributionsSet = new HashSet<>();
         this.allTimeTopDistributions = new ArrayList<>();
+    }
 
-        for (int i = 0; i < initialSize; i++) {
-            addIndividual(new Individual(matrix, random));
+    // Os restantes indivíduos partilham a matriz e o tmin do primeiro e são criados de uma só vez
+    private void populate(Individual first, int initialSize, Random random) {
+        addIndividual(first);
+        for (Individual individual : first.createRandomBatch(random, initialSize - 1)) {
+            addIndividual(individual);
         }
         updateTopDistributions();
     }
 
+    // Troca os piores indivíduos por soluções construtivas: uma gulosa, uma LPT e as restantes LPT aleatorizadas
+    public void warmStart(int count, Random random) {
+        Individual template = getBestIndividual();
+        if (template == null) {
+            return;
+        }
+        List<Individual> seeds = new ConstructiveHeuristics(template).createSeeds(Math.min(count, getPopulationSize()), random);
+        for (Individual seed : seeds) {
+            removeWorst();
+            addIndividual(seed);
+        }
+    }
+
+    // Troca os piores indivíduos por distribuições conhecidas, dadas pela patrulha de cada sistema, e devolve quantas entraram
+    public int seed(List<int[]> patrolOfSystems) {
+        Individual template = getBestIndividual();
+        if (template == null) {
+            return 0;
+        }
+        int seeded = 0;
+        for (int[] patrolOfSystem : patrolOfSystems) {
+            if (seeded == getPopulationSize()) {
+                break;
+            }
+            if (!isAssignable(template, patrolOfSystem)) {
+                continue;
+            }
+            List<List<Integer>> distribution = new ArrayList<>();
+            for (int patrol = 0; patrol < template.getNumPatrols(); patrol++) {
+                distribution.add(new ArrayList<>());
+            }
+            for (int system = 0; system < patrolOfSystem.length; system++) {
+                distribution.get(patrolOfSystem[system]).add(system);
+            }
+            removeWorst();
+            addIndividual(template.createChild(distribution));
+            seeded++;
+        }
+        return seeded;
+    }
+
+    // Uma distribuição só serve se cada sistema estiver numa patrulha que o pode alcançar
+    static boolean isAssignable(Individual template, int[] patrolOfSystem) {
+        if (patrolOfSystem.length != template.getNumSystems()) {
+            return false;
+        }
+        for (int system = 0; system < patrolOfSystem.length; system++) {
+            int patrol = patrolOfSystem[system];
+            if (patrol < 0 || patrol >= template.getNumPatrols() || template.timeOf(patrol, system) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public List<Individual> getIndividuals() {
         return individuals;
     }
 
     public void setIndividuals(List<Individual> individuals) {
+        List<Individual> previous = this.individuals;
+        if (arena != null) {
+            for (Individual individual : previous) {
+                ((ArenaIndividual) individual).setInPopulation(false);
+            }
+            for (Individual individual : individuals) {
+                ((ArenaIndividual) individual).setInPopulation(true);
+            }
+        }
+
+        if (diversityTracker != null || comfortSketch != null) {
+            // Só contam os indivíduos que saem ou entram; numa epidemia são apenas os que morrem
+            Set<Individual> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+            kept.addAll(individuals);
+            Set<Individual> present = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Individual individual : previous) {
+                present.add(individual);
+                if (!kept.contains(individual)) {
+                    countOut(individual);
+                }
+            }
+            for (Individual individual : individuals) {
+                if (!present.contains(individual)) {
+                    countIn(individual);
+                }
+            }
+        }
+
         this.individuals = individuals;
         sortIndividuals();
         updateTopDistributions();
+
+        // Os indivíduos que ficaram de fora devolvem o seu slot à arena
+        for (Individual individual : previous) {
+            releaseIfUnused(individual);
+        }
     }
 
     public int getPopulationSize() {
@@ -44,24 +176,305 @@ public class Population {
     }
 
     public void addIndividual(Individual individual) {
+        if (admissionPolicy != null) {
+            int size = individuals.size() + (pendingIndividuals == null ? 0 : pendingIndividuals.size());
+            AdmissionPolicy.Decision decision = admissionPolicy.decide(individual, individuals, size, maxPopulationSize);
+            if (decision == AdmissionPolicy.Decision.REJECT) {
+                // Um filho rejeitado conta como inserido fora dos K melhores e devolve o seu slot à arena
+                lastInsertionIndex = individuals.size();
+                releaseIfUnused(individual);
+                return;
+            }
+            if (decision == AdmissionPolicy.Decision.REPLACE_WORST) {
+                removeIndividual(individuals.size() - 1);
+            }
+        }
+
+        countIn(individual);
+
+        if (pendingIndividuals != null) {
+            addPendingIndividual(individual);
+            return;
+        }
+
         int index = Collections.binarySearch(individuals, individual);
         if (index < 0) {
             index = -index - 1;
         }
         individuals.add(index, individual);
+        lastInsertionIndex = index;
+        if (arena != null) {
+            ((ArenaIndividual) individual).setInPopulation(true);
+        }
         updateTopDistributions();
 
         // Atualiza o melhor indivíduo de sempre
         if (bestEverIndividual == null || individual.getComfortLevel() > bestEverIndividual.getComfortLevel()) {
+            Individual previousBestEver = bestEverIndividual;
             bestEverIndividual = individual;
+            releaseIfUnused(previousBestEver);
         }
     }
 
     public void removeIndividual(int index) {
-        individuals.remove(index);
+        Individual removed = individuals.remove(index);
+        lastRemovalIndex = index;
+        countOut(removed);
+        if (arena != null) {
+            ((ArenaIndividual) removed).setInPopulation(false);
+        }
+        if (pendingIndividuals == null) {
+            updateTopDistributions();
+        }
+        releaseIfUnused(removed);
+    }
+
+    // Retira o pior indivíduo, o último da lista ordenada
+    public void removeWorst() {
+        removeIndividual(getPopulationSize() - 1);
+    }
+
+    // Durante um salto o melhor indivíduo e as top 5 ficam congelados; os filhos só entram na lista em endBatch
+    public void beginBatch() {
+        pendingIndividuals = new ArrayList<>();
+    }
+
+    private void addPendingIndividual(Individual individual) {
+        pendingIndividuals.add(individual);
+        if (arena != null) {
+            ((ArenaIndividual) individual).setInPopulation(true);
+        }
+        if (bestEverIndividual == null || individual.getComfortLevel() > bestEverIndividual.getComfortLevel()) {
+            Individual previousBestEver = bestEverIndividual;
+            bestEverIndividual = individual;
+            releaseIfUnused(previousBestEver);
+        }
+    }
+
+    // Junta os filhos do salto à lista ordenada de uma só vez e atualiza as top 5 uma única vez
+    public void endBatch() {
+        List<Individual> pending = pendingIndividuals;
+        pendingIndividuals = null;
+        if (pending.isEmpty()) {
+            updateTopDistributions();
+            return;
+        }
+
+        Collections.sort(pending);
+        List<Individual> merged = new ArrayList<>(individuals.size() + pending.size());
+        int i = 0;
+        int j = 0;
+        while (i < individuals.size() || j < pending.size()) {
+            // Em caso de empate fica primeiro o indivíduo que já estava na população
+            if (j == pending.size() || (i < individuals.size() && individuals.get(i).compareTo(pending.get(j)) <= 0)) {
+                merged.add(individuals.get(i++));
+            } else {
+                merged.add(pending.get(j++));
+            }
+        }
+        individuals = merged;
         updateTopDistributions();
     }
 
+    // Um slot só é libertado quando o indivíduo já não está na população, nem é o melhor de sempre ou do top de sempre
+    private void releaseIfUnused(Individual individual) {
+        if (arena == null || individual == null) {
+            return;
+        }
+        ArenaIndividual handle = (ArenaIndividual) individual;
+        if (!handle.isInPopulation() && handle != bestEverIndividual && !allTimeTopDistributions.contains(handle)) {
+            handle.release();
+        }
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public void setAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    // Passa a acompanhar a diversidade a partir dos indivíduos atuais (ver DiversityTracker)
+    public void trackDiversity() {
+        if (individuals.isEmpty()) {
+            return;
+        }
+        Individual first = individuals.get(0);
+        diversityTracker = new DiversityTracker(first.getNumPatrols(), first.getNumSystems());
+        for (Individual individual : individuals) {
+            diversityTracker.add(individual);
+        }
+    }
+
+    public DiversityTracker getDiversityTracker() {
+        return diversityTracker;
+    }
+
+    // Passa a acompanhar os quantis do conforto e do tempo de patrulha (ver QuantileSketch)
+    public void trackQuantiles() {
+        comfortSketch = new QuantileSketch(QuantileSketch.DEFAULT_ALPHA);
+        patrolTimeSketch = new QuantileSketch(QuantileSketch.DEFAULT_ALPHA);
+        for (Individual individual : individuals) {
+            comfortSketch.add(individual.getComfortLevel());
+            patrolTimeSketch.add(individual.getOptimalPatrolTime());
+        }
+    }
+
+    public QuantileSketch getComfortSketch() {
+        return comfortSketch;
+    }
+
+    public QuantileSketch getPatrolTimeSketch() {
+        return patrolTimeSketch;
+    }
+
+    // Atualiza as medidas incrementais quando um indivíduo entra na população
+    private void countIn(Individual individual) {
+        if (diversityTracker != null) {
+            diversityTracker.add(individual);
+        }
+        if (comfortSketch != null) {
+            comfortSketch.add(individual.getComfortLevel());
+            patrolTimeSketch.add(individual.getOptimalPatrolTime());
+        }
+    }
+
+    // Atualiza as medidas incrementais quando um indivíduo sai da população
+    private void countOut(Individual individual) {
+        if (diversityTracker != null) {
+            diversityTracker.remove(individual);
+        }
+        if (comfortSketch != null) {
+            comfortSketch.remove(individual.getComfortLevel());
+            patrolTimeSketch.remove(individual.getOptimalPatrolTime());
+        }
+    }
+
+    /**
+     * This method changes the times of the matrix shared by the population and evaluates every individual
+     * again, the population, the best ever and the all-time top distributions, each one going only through
+     * the patrols whose times changed (see Individual.applyCostChanges). tmin is computed again once and
+     * the individuals are sorted once. Every update is checked before the matrix is changed, so an invalid
+     * batch leaves the population as it was.
+     *
+     * @param updates the updates, applied in order
+     * @throws IllegalArgumentException if an update is invalid, see checkCostUpdates
+     */
+    public void applyCostUpdates(List<CostUpdate> updates) {
+        if (updates.isEmpty() || individuals.isEmpty()) {
+            return;
+        }
+        Individual first = individuals.get(0);
+        int[][] matrix = first.getMatrix();
+        SparseMatrix sparseMatrix = first.getSparseMatrix();
+        int numPatrols = first.getNumPatrols();
+        int numSystems = first.getNumSystems();
+        checkCostUpdates(updates, numPatrols, numSystems, sparseMatrix);
+
+        int[] oldTimes = new int[updates.size()];
+        for (int i = 0; i < updates.size(); i++) {
+            CostUpdate update = updates.get(i);
+            if (sparseMatrix != null) {
+                oldTimes[i] = sparseMatrix.set(update.getPatrol(), update.getSystem(), update.getTime());
+            } else {
+                oldTimes[i] = matrix[update.getPatrol()][update.getSystem()];
+                matrix[update.getPatrol()][update.getSystem()] = update.getTime();
+            }
+        }
+        if (matrix != null) {
+            BatchEvaluator.invalidate(matrix);
+        }
+        float tmin = sparseMatrix != null ? first.calculateTmin(sparseMatrix) : first.calculateTmin(matrix);
+        CostChanges changes = new CostChanges(numPatrols, numSystems, updates, oldTimes, tmin);
+
+        // Cada indivíduo é reavaliado uma só vez, mesmo que seja também o melhor de sempre ou do top de sempre
+        for (Individual individual : heldIndividuals()) {
+            individual.applyCostChanges(changes);
+        }
+
+        sortIndividuals();
+        if (individuals.get(0).getComfortLevel() > bestEverIndividual.getComfortLevel()) {
+            Individual previousBestEver = bestEverIndividual;
+            bestEverIndividual = individuals.get(0);
+            releaseIfUnused(previousBestEver);
+        }
+        updateTopDistributions();
+        if (comfortSketch != null) {
+            trackQuantiles();
+        }
+    }
+
+    /**
+     * This method moves every individual the population holds to a copy of their matrix, so that cost
+     * updates do not change the matrix the population was created with, which other runs may share.
+     */
+    public void copyMatrix() {
+        if (individuals.isEmpty()) {
+            return;
+        }
+        Individual first = individuals.get(0);
+        int[][] matrix = first.getMatrix() == null ? null : copyMatrix(first.getMatrix());
+        SparseMatrix sparseMatrix = first.getSparseMatrix() == null ? null : first.getSparseMatrix().copy();
+        for (Individual individual : heldIndividuals()) {
+            individual.setMatrix(matrix, sparseMatrix);
+        }
+    }
+
+    // Cópia de uma matriz densa, linha a linha
+    static int[][] copyMatrix(int[][] matrix) {
+        int[][] copy = new int[matrix.length][];
+        for (int patrol = 0; patrol < matrix.length; patrol++) {
+            copy[patrol] = matrix[patrol].clone();
+        }
+        return copy;
+    }
+
+    // Os indivíduos da população, o melhor de sempre e os do top de sempre, cada um uma só vez
+    private Set<Individual> heldIndividuals() {
+        Set<Individual> held = Collections.newSetFromMap(new IdentityHashMap<>());
+        held.addAll(individuals);
+        if (bestEverIndividual != null) {
+            held.add(bestEverIndividual);
+        }
+        held.addAll(allTimeTopDistributions);
+        return held;
+    }
+
+    /**
+     * This method checks a batch of cost updates against a matrix, without changing it.
+     *
+     * @param updates the updates
+     * @param numPatrols the number of patrols of the matrix
+     * @param numSystems the number of systems of the matrix
+     * @param sparseMatrix the sparse matrix, whose pairs without access cannot be updated, or null if the matrix is dense
+     * @throws IllegalArgumentException if an update is outside the matrix, has a negative time, or gives a
+     *         time to a pair of a sparse matrix without access
+     */
+    public static void checkCostUpdates(Collection<CostUpdate> updates, int numPatrols, int numSystems, SparseMatrix sparseMatrix) {
+        for (CostUpdate update : updates) {
+            if (update.getPatrol() < 0 || update.getPatrol() >= numPatrols || update.getSystem() < 0 || update.getSystem() >= numSystems) {
+                throw new IllegalArgumentException("Patrol " + (update.getPatrol() + 1) + ", system " + (update.getSystem() + 1) + " is outside the matrix.");
+            }
+            if (update.getTime() < 0) {
+                throw new IllegalArgumentException("Patrol " + (update.getPatrol() + 1) + ", system " + (update.getSystem() + 1) + " cannot take a negative time.");
+            }
+            if (sparseMatrix != null && sparseMatrix.get(update.getPatrol(), update.getSystem()) == SparseMatrix.NO_ACCESS) {
+                throw new IllegalArgumentException("Patrol " + (update.getPatrol() + 1) + " has no access to system " + (update.getSystem() + 1) + ".");
+            }
+        }
+    }
+
+    // A reanálise das top 5 é medida à parte dos eventos que a provocam
+    public void setTelemetry(Telemetry telemetry) {
+        this.telemetry = telemetry;
+        this.topDistributionsCounter = telemetry == null ? null : telemetry.counter("Population.updateTopDistributions");
+    }
+
+    public IndividualArena getArena() {
+        return arena;
+    }
+
     public void sortIndividuals() {
         Collections.sort(individuals);
     }
@@ -82,11 +495,36 @@ public class Population {
         return allTimeTopDistributions;
     }
 
+    public int getLastInsertionIndex() {
+        return lastInsertionIndex;
+    }
+
+    public int getLastRemovalIndex() {
+        return lastRemovalIndex;
+    }
+
+    // Os filhos herdam a cache dos pais, por isso basta ligá-la aos indivíduos atuais
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        for (Individual individual : individuals) {
+            individual.setFitnessCache(fitnessCache);
+        }
+    }
+
     public int getMaxPopulationSize() {
         return maxPopulationSize;
     }
 
     private void updateTopDistributions() {
+        if (telemetry == null) {
+            rescanTopDistributions();
+            return;
+        }
+        telemetry.begin(topDistributionsCounter);
+        rescanTopDistributions();
+        telemetry.end();
+    }
+
+    private void rescanTopDistributions() {
         if (!individuals.isEmpty()) {
             bestIndividual = individuals.get(0);
         }
@@ -117,7 +555,11 @@ public class Population {
 
         Collections.sort(allTimeTopDistributions, (a, b) -> Float.compare(b.getComfortLevel(), a.getComfortLevel()));
         if (allTimeTopDistributions.size() > 5) {
+            List<Individual> dropped = new ArrayList<>(allTimeTopDistributions.subList(5, allTimeTopDistributions.size()));
             allTimeTopDistributions = allTimeTopDistributions.subList(0, 5);
+            for (Individual individual : dropped) {
+                releaseIfUnused(individual);
+            }
         }
     }
 }
@@ -0,0 +1,204 @@
+package StochasticSimulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * This class represents a mergeable sketch of the quantiles of a stream of positive values.
+ *
+ * The QuantileSketch class counts the values in logarithmic buckets, bucket i holding the values in
+ * (gamma^(i-1), gamma^i] with gamma = (1 + alpha) / (1 - alpha), so that every quantile it returns is
+ * within a relative error alpha of a value of the stream with that rank. Unlike KLL or t-digest
+ * sketches, whose compactions cannot be undone, a bucket count can be decremented, so the sketch
+ * follows a population whose individuals also leave it. Adding or removing a value is O(1), a
+ * quantile costs O(b), b being the number of buckets between the smallest and largest values, which
+ * does not depend on the number of values, and two sketches with the same alpha merge by adding
+ * their counts, so the sketches of several islands or replicas give the quantiles of all of them.
+ * Values that are not positive are counted apart and come before every bucket.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class QuantileSketch {
+    /**
+     * Relative accuracy used by the population.
+     */
+    public static final float DEFAULT_ALPHA = 0.01f;
+
+    private float alpha;
+    private double gamma;
+    private double logGamma;
+    private long[] counts; // Count of bucket offset + i
+    private int offset;
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Constructor for QuantileSketch.
+     *
+     * @param alpha the relative accuracy of the quantiles, between 0 and 1
+     */
+    public QuantileSketch(float alpha) {
+        this.alpha = alpha;
+        this.gamma = (1.0 + alpha) / (1.0 - alpha);
+        this.logGamma = Math.log(gamma);
+        this.counts = new long[0];
+    }
+
+    /**
+     * This method adds a value to the sketch.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * This method removes a value previously added to the sketch.
+     *
+     * @param value the value
+     */
+    public void remove(double value) {
+        add(value, -1);
+    }
+
+    private void add(double value, long weight) {
+        count += weight;
+        if (!(value > 0)) {
+            zeroCount += weight;
+            return;
+        }
+        int bucket = (int) Math.ceil(Math.log(value) / logGamma);
+        ensureBucket(bucket);
+        counts[bucket - offset] += weight;
+    }
+
+    /**
+     * This method adds the counts of another sketch to this one.
+     *
+     * @param other a sketch with the same relative accuracy
+     * @throws IllegalArgumentException if the relative accuracies differ
+     */
+    public void merge(QuantileSketch other) {
+        if (other.alpha != alpha) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + alpha + " and " + other.alpha + ".");
+        }
+        if (other.counts.length > 0) {
+            ensureBucket(other.offset);
+            ensureBucket(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * This method returns an approximate quantile of the values.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the value of rank q, within the relative accuracy, or NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, q)) * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // Middle of the bucket, relative to its bounds
+                return 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, offset + counts.length - 1) / (gamma + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * This method writes the sketch.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        int first = 0;
+        int last = counts.length - 1;
+        while (first <= last && counts[first] == 0) {
+            first++;
+        }
+        while (last >= first && counts[last] == 0) {
+            last--;
+        }
+        out.writeFloat(alpha);
+        out.writeLong(zeroCount);
+        out.writeInt(offset + first);
+        out.writeInt(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            out.writeLong(counts[i]);
+        }
+    }
+
+    /**
+     * This method reads a sketch written by writeTo.
+     *
+     * @param in the stream to read from
+     * @return the sketch
+     * @throws IOException if the stream cannot be read or does not hold a sketch
+     */
+    public static QuantileSketch readFrom(DataInputStream in) throws IOException {
+        float alpha = in.readFloat();
+        if (!(alpha > 0 && alpha < 1)) {
+            throw new IOException("invalid sketch");
+        }
+        QuantileSketch sketch = new QuantileSketch(alpha);
+        sketch.zeroCount = in.readLong();
+        sketch.offset = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 20) {
+            throw new IOException("invalid sketch");
+        }
+        sketch.counts = new long[length];
+        sketch.count = sketch.zeroCount;
+        for (int i = 0; i < length; i++) {
+            sketch.counts[i] = in.readLong();
+            sketch.count += sketch.counts[i];
+        }
+        return sketch;
+    }
+
+    // Grows the buckets, with some room on the side that grew, so that they cover the given one
+    private void ensureBucket(int bucket) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = bucket - 4;
+            return;
+        }
+        if (bucket < offset) {
+            int grow = Math.max(offset - bucket, counts.length / 2);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            offset -= grow;
+        } else if (bucket >= offset + counts.length) {
+            int grow = Math.max(bucket - offset - counts.length + 1, counts.length / 2);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, 0, counts.length);
+            counts = grown;
+        }
+    }
+}
@@ -3,69 +3,459 @@ package StochasticSimulation;
 import StochasticSimulation.Events.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import Parser.SimulationParameters;
+import Parser.SparseMatrix;
 
 public class Simulation {
-    private float tau;
-    private float mu;
-    private float rho;
-    private float delta;
+    private static final int CLOCK_CHECK_INTERVAL = 1024; // Eventos entre leituras do relógio
+    protected float tau;
+    protected float mu;
+    protected float rho;
+    protected float delta;
+    protected float chi; // Parâmetro do cruzamento; zero se estiver desligado
     private int v;
-    private int vMax;
-    private Population population;
+    protected int vMax;
+    protected Population population;
     private List<Observer> observers;
-    private Random random;
-    private boolean improved;
-    private int Gr; // Limite de estagnação
-    private int restartCount; // Contador de reinícios
+    protected Random random;
+    protected boolean improved;
+    protected int Gr; // Limite de estagnação, em gerações
+    protected int restartCount; // Contador de reinícios
+    protected long restartNanos; // Tempo gasto nos reinícios
+    private float eliteFraction; // Fração da população que sobrevive a um reinício
+    private int offspring; // Filhos candidatos por reprodução ou mutação
+    private int admittedOffspring; // Dos quais entram na população os melhores
+    protected int eventCount;
+    protected int epidemicCount;
+    protected float bestEverTime; // Instante em que o melhor de sempre foi encontrado
+    protected volatile boolean stopRequested;
+    private volatile String stopReason; // Nulo se a simulação não foi parada antes de tau
+    private long timeLimitNanos; // Zero sem limite de tempo real
+    private long eventLimit; // Zero sem limite de eventos
+    private long deadline;
+    private AdaptiveRateController rateController; // Nulo fora do modo adaptativo
+    private FitnessCache fitnessCache; // Nulo se a cache estiver desligada
+    private float restartEntropy; // Entropia abaixo da qual uma população estagnada reinicia; zero se desligado
+    private Telemetry telemetry; // Nula se a telemetria estiver desligada
+    private int numPatrols;
+    private int numSystems;
+    private SparseMatrix sparseMatrix; // Nula se a matriz for densa
+    private ConcurrentLinkedQueue<CostUpdate> pendingCostUpdates; // Alterações de custos pedidas por outras threads
+    private volatile boolean costUpdatesPending;
+    private TreeMap<Float, List<CostUpdate>> scheduledCostUpdates; // Alterações de custos por instante, nulo se não houver
+    private long costUpdateCount;
+    private int costUpdateBatches;
+    private long costUpdateNanos;
+    private boolean ownsMatrix; // Falso enquanto a população usar a matriz dos parâmetros
+    private SolutionArchive archive; // Nulo sem arquivo de soluções
+    private int archiveSeedCount;
 
     public Simulation(SimulationParameters params, Random random, boolean improved) {
         this.tau = params.getTau();
         this.mu = params.getMu();
         this.rho = params.getRho();
         this.delta = params.getDelta();
+        this.chi = params.getCrossoverRate();
         this.v = params.getV();
         this.vMax = params.getVMax();
         this.random = random;
-        this.population = new Population(v, vMax, params.getMatrix(), random);
+        this.numPatrols = params.getN();
+        this.numSystems = params.getM();
+        int[][] matrix = params.getMatrix();
+        this.sparseMatrix = params.getSparseMatrix();
+        if (params.hasCostUpdates()) {
+            // As alterações de custos mudam a matriz; as outras réplicas com os mesmos parâmetros ficam com a original
+            matrix = matrix == null ? null : Population.copyMatrix(matrix);
+            sparseMatrix = sparseMatrix == null ? null : sparseMatrix.copy();
+            this.ownsMatrix = true;
+        }
+        if (params.getThreads() > 1) {
+            // Algumas faixas por trabalhador, para que as inserções raramente disputem a mesma faixa
+            this.population = new ConcurrentPopulation(v, vMax, matrix, sparseMatrix, params.isBatchEvaluation(), random, 4 * params.getThreads());
+        } else if (params.isArena()) {
+            // Uma página da arena chega para a população máxima mais a folga até à epidemia
+            IndividualArena arena = new IndividualArena(params.getN(), params.getM(), vMax + 1);
+            this.population = new Population(v, vMax, matrix, sparseMatrix, arena, random);
+        } else if (sparseMatrix != null) {
+            this.population = new Population(v, vMax, sparseMatrix, random);
+        } else {
+            this.population = new Population(v, vMax, matrix, params.isBatchEvaluation(), random);
+        }
+        if (params.getWarmStartFraction() > 0) {
+            // Parte da população inicial passa a vir das heurísticas construtivas (ver ConstructiveHeuristics)
+            population.warmStart(Math.max(1, Math.round(params.getWarmStartFraction() * v)), random);
+        }
+        if (params.getArchiveDirectory() != null) {
+            // As melhores distribuições das execuções anteriores na mesma instância entram na população inicial
+            this.archive = SolutionArchive.open(params.getArchiveDirectory());
+            if (archive != null) {
+                long instanceHash = SolutionArchive.instanceHash(matrix, sparseMatrix);
+                this.archiveSeedCount = population.seed(archive.load(instanceHash, numPatrols, numSystems));
+            }
+        }
+        if (params.hasAdmissionPolicy()) {
+            // Só a partir daqui, para que a população inicial entre inteira
+            population.setAdmissionPolicy(new AdmissionPolicy(params.getAdmissionThreshold(),
+                    params.isAdmissionNoDuplicates(), params.isAdmissionReplaceWorst()));
+        }
+        if (params.isDiversityTracking()) {
+            population.trackDiversity();
+        }
+        if (params.isQuantiles() || (params.isIsland() && params.getThreads() == 1)) {
+            // As ilhas enviam ao coordenador os quantis da sua população; a população concorrente não os acompanha
+            population.trackQuantiles();
+        }
         this.observers = new ArrayList<>();
         this.improved = improved;
-        this.Gr = 10; // Valor padrão para o limite de estagnação
+        this.Gr = params.getRestartLimit(); // 10 por omissão
+        this.eliteFraction = params.getEliteFraction();
+        this.offspring = params.getOffspring();
+        this.admittedOffspring = params.getAdmittedOffspring();
+        this.timeLimitNanos = params.getTimeLimitMillis() * 1000000;
+        this.eventLimit = params.getEventLimit();
         this.restartCount = 0; // Inicializar contador de reinícios
+        this.restartEntropy = params.getRestartEntropy();
+        if (params.getFitnessCacheMegabytes() > 0) {
+            this.fitnessCache = new FitnessCache(params.getFitnessCacheMegabytes());
+            population.setFitnessCache(fitnessCache);
+        }
+        if (params.isTelemetry()) {
+            this.telemetry = Telemetry.create();
+            population.setTelemetry(telemetry);
+        }
+        if (params.isAdaptive()) {
+            // Controla a morte, a reprodução e a mutação, pela ordem em que são criadas em run()
+            this.rateController = new AdaptiveRateController(3, params.getAdaptiveTopK(), params.getMinRateScale(), params.getMaxRateScale());
+        }
+        this.pendingCostUpdates = new ConcurrentLinkedQueue<>();
+        if (params.hasCostUpdates()) {
+            float[] instants = params.getCostUpdateInstants();
+            int[][] updates = params.getCostUpdates();
+            for (int i = 0; i < updates.length; i++) {
+                scheduleCostUpdate(instants[i], new CostUpdate(updates[i][0], updates[i][1], updates[i][2]));
+            }
+        }
+    }
+
+    // Escolhe a simulação sequencial, a concorrente ou a por saltos conforme as opções
+    public static Simulation create(SimulationParameters params, Random random, boolean improved) {
+        if (params.getThreads() > 1) {
+            return new ConcurrentSimulation(params, random, improved);
+        }
+        if (params.isTauLeaping()) {
+            return new TauLeapingSimulation(params, random, improved);
+        }
+        return new Simulation(params, random, improved);
+    }
+
+    // Eventos regulares, pela ordem em que o controlador adaptativo os conhece; o cruzamento vem no fim, se estiver ligado
+    protected List<EvolutionEvent> createRegularEvents() {
+        List<EvolutionEvent> events = new ArrayList<>();
+        events.add(new DeathEvent(mu));
+        events.add(withOffspring(new ReproductionEvent(rho)));
+        events.add(withOffspring(new MutationEvent(delta)));
+        if (chi > 0) {
+            events.add(new CrossoverEvent(chi));
+        }
+        return events;
+    }
+
+    // Com mais de um filho por evento, os candidatos são gerados em paralelo e só os melhores entram
+    private EvolutionEvent withOffspring(OffspringEvent event) {
+        return offspring > 1 ? new BatchOffspringEvent(event, offspring, admittedOffspring) : event;
+    }
+
+    // Uma geração são tantos eventos quantos os indivíduos da população inicial
+    protected RestartEvent createRestartEvent() {
+        RestartEvent restartEvent = new RestartEvent(Gr, eliteFraction, v);
+        restartEvent.setEntropyThreshold(restartEntropy);
+        return restartEvent;
+    }
+
+    // Conta os eventos realizados e só reinicia a população quando a estagnação passa de Gr gerações
+    protected void checkRestart(RestartEvent restartEvent, int events) {
+        if (restartEvent.recordEvents(population, events)) {
+            execute(restartEvent);
+            restartCount = restartEvent.getRestartCount();
+            restartNanos = restartEvent.getRestartNanos();
+        }
     }
 
     public void addObserver(Observer observer) {
         observers.add(observer);
     }
 
-    private void notifyObservers(int observationNumber, float currentTime, int eventCount, int epidemicCount) {
+    protected void notifyObservers(int observationNumber, float currentTime, int eventCount, int epidemicCount) {
         for (Observer observer : observers) {
             observer.update_restart_counter(restartCount);
+            if (telemetry != null) {
+                telemetry.begin(telemetry.counter(observer, observer.getClass().getSimpleName() + ".update"));
+            }
             observer.update(observationNumber, currentTime, eventCount, epidemicCount, population);
+            if (telemetry != null) {
+                telemetry.end();
+            }
+        }
+    }
+
+    // Executa um evento; com a telemetria ligada, o tempo de CPU e a memória alocada vão para o contador do seu tipo
+    protected void execute(EvolutionEvent event) {
+        if (telemetry == null) {
+            event.execute(population, random);
+            return;
+        }
+        telemetry.begin(telemetry.counter(event, scopeName(event)));
+        event.execute(population, random);
+        telemetry.end();
+    }
+
+    private static String scopeName(EvolutionEvent event) {
+        if (event instanceof BatchOffspringEvent) {
+            return "BatchOffspringEvent(" + ((BatchOffspringEvent) event).getEvent().getClass().getSimpleName() + ")";
+        }
+        return event.getClass().getSimpleName();
+    }
+
+    /**
+     * This method asks the simulation to change the times of its matrix. It may be called from any
+     * thread; the updates are applied together by the simulation thread before its next event (see
+     * Population.applyCostUpdates). The first batch moves the population to its own copy of the
+     * matrix, so the matrix of the parameters, which other runs may share, never changes. A
+     * ConcurrentSimulation, whose workers change the population at any time, does not support it.
+     *
+     * @param updates the updates, applied in order
+     * @throws IllegalStateException if the simulation runs several worker threads
+     * @throws IllegalArgumentException if an update is outside the matrix, has a negative time, or gives a
+     *         time to a pair of a sparse matrix without access; no update of the batch is then applied
+     */
+    public void applyCostUpdates(Collection<CostUpdate> updates) {
+        Population.checkCostUpdates(updates, numPatrols, numSystems, sparseMatrix);
+        pendingCostUpdates.addAll(updates);
+        costUpdatesPending = true;
+    }
+
+    /**
+     * This method schedules a change of a time of the matrix at an instant of the simulation. The
+     * updates scheduled up to the instant of an event are applied together before it.
+     *
+     * @param instant the instant of the simulation the update is due
+     * @param update the update
+     * @throws IllegalArgumentException if the update is invalid, see applyCostUpdates
+     * @throws IllegalStateException if the simulation runs several worker threads
+     */
+    public void scheduleCostUpdate(float instant, CostUpdate update) {
+        Population.checkCostUpdates(List.of(update), numPatrols, numSystems, sparseMatrix);
+        if (scheduledCostUpdates == null) {
+            scheduledCostUpdates = new TreeMap<>();
+        }
+        scheduledCostUpdates.computeIfAbsent(instant, key -> new ArrayList<>()).add(update);
+    }
+
+    // Aplica de uma só vez as alterações pedidas e as agendadas até ao instante atual
+    protected void applyDueCostUpdates(float currentTime) {
+        boolean scheduledDue = scheduledCostUpdates != null && !scheduledCostUpdates.isEmpty()
+                && scheduledCostUpdates.firstKey() <= currentTime;
+        if (!scheduledDue && !costUpdatesPending) {
+            return;
+        }
+
+        List<CostUpdate> updates = new ArrayList<>();
+        while (scheduledDue) {
+            Map.Entry<Float, List<CostUpdate>> due = scheduledCostUpdates.pollFirstEntry();
+            updates.addAll(due.getValue());
+            scheduledDue = !scheduledCostUpdates.isEmpty() && scheduledCostUpdates.firstKey() <= currentTime;
+        }
+        costUpdatesPending = false;
+        CostUpdate update;
+        while ((update = pendingCostUpdates.poll()) != null) {
+            updates.add(update);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (telemetry != null) {
+            telemetry.begin(telemetry.counter("Population.applyCostUpdates"));
+        }
+        if (!ownsMatrix) {
+            population.copyMatrix();
+            ownsMatrix = true;
+        }
+        population.applyCostUpdates(updates);
+        if (telemetry != null) {
+            telemetry.end();
+        }
+        // As métricas guardadas foram calculadas com os tempos antigos
+        if (fitnessCache != null) {
+            fitnessCache.clear();
+        }
+        costUpdateNanos += System.nanoTime() - start;
+        costUpdateCount += updates.size();
+        costUpdateBatches++;
+    }
+
+    public long getCostUpdateCount() {
+        return costUpdateCount;
+    }
+
+    public int getCostUpdateBatches() {
+        return costUpdateBatches;
+    }
+
+    public long getCostUpdateNanos() {
+        return costUpdateNanos;
+    }
+
+    // Guarda as melhores distribuições de sempre, avaliadas na matriz atual, para as próximas execuções
+    public int archiveSolutions() {
+        List<Individual> top = population.getAllTimeTopDistributions();
+        if (archive == null || top.isEmpty()) {
+            return 0;
+        }
+        Individual first = top.get(0);
+        return archive.store(SolutionArchive.instanceHash(first.getMatrix(), first.getSparseMatrix()), top);
+    }
+
+    public SolutionArchive getArchive() {
+        return archive;
+    }
+
+    public int getArchiveSeedCount() {
+        return archiveSeedCount;
+    }
+
+    public Population getPopulation() {
+        return population;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getEpidemicCount() {
+        return epidemicCount;
+    }
+
+    public int getRestartCount() {
+        return restartCount;
+    }
+
+    public long getRestartNanos() {
+        return restartNanos;
+    }
+
+    public float getBestEverTime() {
+        return bestEverTime;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    public Telemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public AdaptiveRateController getRateController() {
+        return rateController;
+    }
+
+    // Taxas efetivas de morte, reprodução e mutação, já escaladas pelo controlador adaptativo
+    public float[] getEffectiveRates() {
+        float[] rates = { mu, rho, delta };
+        if (rateController != null) {
+            for (int i = 0; i < rates.length; i++) {
+                rates[i] *= rateController.getScale(i);
+            }
         }
+        return rates;
+    }
+
+    // Pede à simulação para parar depois do evento em curso; a observação final continua a ser reportada
+    public void requestStop() {
+        requestStop("stop requested");
+    }
+
+    public void requestStop(String reason) {
+        if (stopReason == null) {
+            stopReason = reason;
+        }
+        stopRequested = true;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    // O orçamento de tempo real e a telemetria contam a partir do início de run()
+    protected void startBudget() {
+        deadline = System.nanoTime() + timeLimitNanos;
+        if (telemetry != null) {
+            telemetry.start();
+        }
+    }
+
+    // O limite de eventos é verificado sempre, o relógio só a cada CLOCK_CHECK_INTERVAL eventos
+    protected boolean checkBudget(long events) {
+        return checkBudget(events, events % CLOCK_CHECK_INTERVAL == 0);
+    }
+
+    // Para a simulação se o orçamento se esgotou; readClock diz se vale a pena ler o relógio
+    protected boolean checkBudget(long events, boolean readClock) {
+        if (eventLimit > 0 && events >= eventLimit) {
+            requestStop("event limit");
+            return true;
+        }
+        if (readClock && timeLimitNanos > 0 && System.nanoTime() - deadline >= 0) {
+            requestStop("time limit");
+            return true;
+        }
+        return false;
+    }
+
+    // Eventos que ainda cabem no limite de eventos
+    protected long getRemainingEvents() {
+        return eventLimit > 0 ? eventLimit - eventCount : Long.MAX_VALUE;
+    }
+
+    // Uma morte é produtiva se poupa os K melhores; uma reprodução ou mutação se o filho entra nos K melhores
+    private void recordOutcome(int eventIndex) {
+        int topK = rateController.getTopK();
+        boolean success;
+        if (eventIndex == 0) {
+            success = population.getLastRemovalIndex() >= topK;
+        } else {
+            success = population.getLastInsertionIndex() < topK;
+        }
+        rateController.record(eventIndex, success);
     }
 
     public void run() {
+        startBudget();
         float currentTime = 0;
-        int eventCount = 0;
-        int epidemicCount = 0;
+        eventCount = 0;
+        epidemicCount = 0;
+        bestEverTime = 0;
+        Individual bestEver = population.getBestEverIndividual();
         float observationInterval = tau / 20;
         float nextObservationTime = observationInterval;
         int observationCount = 0;
 
-        List<EvolutionEvent> events = new ArrayList<>();
-        events.add(new DeathEvent(mu));
-        events.add(new ReproductionEvent(rho));
-        events.add(new MutationEvent(delta));
+        List<EvolutionEvent> events = createRegularEvents();
         EpidemicEvent epidemicEvent = new EpidemicEvent(population.getMaxPopulationSize());
         events.add(epidemicEvent);
 
-        RestartEvent restartEvent = new RestartEvent(Gr);
+        RestartEvent restartEvent = createRestartEvent();
 
-        while (currentTime < tau && population.getPopulationSize() > 0) {
+        while (currentTime < tau && population.getPopulationSize() > 0 && !stopRequested) {
             Individual bestIndividual = population.getBestIndividual();
 
             if (bestIndividual.getComfortLevel() == 1.0f) {
@@ -75,13 +465,18 @@ public class Simulation {
             }
 
             EvolutionEvent nextEvent = null;
+            int nextEventIndex = -1;
             float minEventTime = Float.MAX_VALUE;
 
-            for (EvolutionEvent event : events) {
-                float eventTime = event.getNextEventTime(bestIndividual);
+            for (int i = 0; i < events.size(); i++) {
+                float eventTime = events.get(i).getNextEventTime(bestIndividual);
+                if (rateController != null && i < 3) {
+                    eventTime *= rateController.getScale(i);
+                }
                 if (eventTime < minEventTime) {
                     minEventTime = eventTime;
-                    nextEvent = event;
+                    nextEvent = events.get(i);
+                    nextEventIndex = i;
                 }
             }
 
@@ -104,30 +499,42 @@ public class Simulation {
                 break;
             }
 
-            nextEvent.execute(population, random);
+            applyDueCostUpdates(currentTime);
+            execute(nextEvent);
+
+            if (rateController != null && nextEventIndex < 3) {
+                recordOutcome(nextEventIndex);
+            }
+
+            if (population.getBestEverIndividual() != bestEver) {
+                bestEver = population.getBestEverIndividual();
+                bestEverTime = currentTime;
+            }
 
 
 
             // Check and execute epidemic event if needed
             if (population.getPopulationSize() > vMax) {
-                epidemicEvent.execute(population, random);
+                execute(epidemicEvent);
                 epidemicCount++;
             }
 
-            // Trigger Restart event periodically
+            // Reinicia a população se estiver estagnada
             if (improved) {
-                restartEvent.execute(population, random);
-                restartCount++;
+                checkRestart(restartEvent, 1);
             }
 
             if (population.getPopulationSize() == 0) {
                 return;
             }
+
+            checkBudget(eventCount);
         }
 
+        // Parada antes de tau: a observação final mostra o melhor de sempre no instante em que parou
         if (currentTime < tau) {
             observationCount++;
-            notifyObservers(observationCount, tau, eventCount, epidemicCount);
+            notifyObservers(observationCount, stopRequested ? currentTime : tau, eventCount, epidemicCount);
         }
     }
 }
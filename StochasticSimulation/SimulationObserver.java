@@ -1,31 +1,73 @@
 package StochasticSimulation;
 
+import java.io.PrintStream;
 import java.util.List;
 
 public class SimulationObserver extends Observer {
+    protected PrintStream out;
+    private ObservationCompressor compressor; // Nulo quando as distribuições são sempre impressas por extenso
+
+    public SimulationObserver() {
+        this(System.out, false);
+    }
+
+    // Com compact, as distribuições iguais ou pouco alteradas desde a observação anterior são impressas
+    // como referências ou diferenças (ver ObservationCompressor)
+    public SimulationObserver(PrintStream out, boolean compact) {
+        this.out = out;
+        this.compressor = compact ? new ObservationCompressor() : null;
+    }
+
     @Override
     public void update(int observationNumber, float currentTime, int eventCount, int epidemicCount, Population population) {
         Individual bestIndividual = population.getBestIndividual();
         Individual bestEverIndividual = population.getBestEverIndividual();
         List<Individual> allTimeTopDistributions = population.getAllTimeTopDistributions();
+
+        if (compressor != null) {
+            compressor.beginObservation(observationNumber);
+        }
         
-        System.out.println("Observation " + observationNumber + ":");
-        System.out.println("                Present instant: " + currentTime);
-        System.out.println("                Number of realized events: " + eventCount);
-        System.out.println("                Population size: " + population.getPopulationSize());
-        System.out.println("                Number of epidemics: " + epidemicCount);
-        System.out.println("                Best distribution of the patrols: " + formatDistribution(bestIndividual.getDistribution()));
-        System.out.println("                Empire policing time: " + bestIndividual.getOptimalPatrolTime());
-        System.out.println("                Comfort: " + bestIndividual.getComfortLevel());
-        System.out.println("                Best ever distribution of the patrols: " + formatDistribution(bestEverIndividual.getDistribution()));
-        System.out.println("                Empire policing time: " + bestEverIndividual.getOptimalPatrolTime());
-        System.out.println("                Comfort: " + bestEverIndividual.getComfortLevel());
+        out.println("Observation " + observationNumber + ":");
+        out.println("                Present instant: " + currentTime);
+        out.println("                Number of realized events: " + eventCount);
+        out.println("                Population size: " + population.getPopulationSize());
+        out.println("                Number of epidemics: " + epidemicCount);
+        out.println("                Best distribution of the patrols: " + describe("best", bestIndividual));
+        out.println("                Empire policing time: " + bestIndividual.getOptimalPatrolTime());
+        out.println("                Comfort: " + bestIndividual.getComfortLevel());
+        out.println("                Best ever distribution of the patrols: " + describe("bestever", bestEverIndividual));
+        out.println("                Empire policing time: " + bestEverIndividual.getOptimalPatrolTime());
+        out.println("                Comfort: " + bestEverIndividual.getComfortLevel());
+        DiversityTracker diversityTracker = population.getDiversityTracker();
+        if (diversityTracker != null) {
+            out.println("                Diversity: entropy " + (float) diversityTracker.getEntropy()
+                    + ", mean distance to best " + (float) diversityTracker.getMeanDistanceToBest(bestIndividual));
+        }
+        QuantileSketch comfortSketch = population.getComfortSketch();
+        if (comfortSketch != null) {
+            out.println("                Comfort p10/p50/p90: " + formatQuantiles(comfortSketch));
+            out.println("                Patrol time p10/p50/p90: " + formatQuantiles(population.getPatrolTimeSketch()));
+        }
 
+        int rank = 0;
         for (Individual individual : allTimeTopDistributions) {
-            System.out.println("                " + formatDistribution(individual.getDistribution()) + " : " + individual.getOptimalPatrolTime() + " : " + individual.getComfortLevel());
+            rank++;
+            out.println("                " + describe("top" + rank, individual) + " : " + individual.getOptimalPatrolTime() + " : " + individual.getComfortLevel());
         }
     }
 
+    private String describe(String slot, Individual individual) {
+        if (compressor == null) {
+            return formatDistribution(individual.getDistribution());
+        }
+        return compressor.describe(slot, individual.getDistribution());
+    }
+
+    public static String formatQuantiles(QuantileSketch sketch) {
+        return (float) sketch.getQuantile(0.1) + " / " + (float) sketch.getQuantile(0.5) + " / " + (float) sketch.getQuantile(0.9);
+    }
+
     public static String formatDistribution(List<List<Integer>> distribution) {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
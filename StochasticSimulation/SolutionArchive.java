@@ -0,0 +1,368 @@
+package StochasticSimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import Parser.SparseMatrix;
+
+/**
+ * This class represents an on-disk archive of the best distributions found for every instance.
+ *
+ * The SolutionArchive class keeps, in a directory, an append-only log of records and an index of
+ * them. An instance is identified by a 64-bit hash of n, m and every time of its matrix, so a dense
+ * and a sparse reading of the same file share their solutions. A record holds the hash, n, m, the
+ * optimal patrol time and the patrol of every system, in one, two or four bytes per system
+ * depending on n, followed by a CRC32 of the record. The index holds, for every record, the hash
+ * of its instance, its offset in the log, its patrol time and the fingerprint of its distribution,
+ * so the best records of an instance are found without reading the log.
+ *
+ * A record is only appended when its distribution is not archived yet and would be among the SIZE
+ * best of its instance; records that fall behind stay in the log, which is never rewritten. A run
+ * killed while appending leaves a torn record at the end of the log: the next load or store drops
+ * it and indexes the records the index is missing, holding a lock on the log so that several
+ * processes or threads can share the directory.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class SolutionArchive {
+    /**
+     * Number of distributions kept for every instance, as in the all-time top distributions.
+     */
+    public static final int SIZE = 5;
+
+    private static final int RECORD_MAGIC = 0x534f4c31; // "SOL1"
+    private static final int INDEX_ENTRY_BYTES = 28;
+    private static final Object LOCK = new Object(); // File locks are per process, not per thread
+
+    private File logFile;
+    private File indexFile;
+
+    private SolutionArchive(File directory) {
+        this.logFile = new File(directory, "archive.log");
+        this.indexFile = new File(directory, "archive.idx");
+    }
+
+    /**
+     * This method opens the archive of a directory, creating the directory if needed.
+     *
+     * @param directoryPath the path of the directory
+     * @return the archive, or null if the directory cannot be created
+     */
+    public static SolutionArchive open(String directoryPath) {
+        File directory = new File(directoryPath);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.out.println("Cannot create the archive directory " + directoryPath + ".");
+            return null;
+        }
+        return new SolutionArchive(directory);
+    }
+
+    /**
+     * This method computes the hash identifying an instance, from n, m and every time of its matrix,
+     * NO_ACCESS standing for the pairs a sparse matrix does not hold.
+     *
+     * @param matrix the dense matrix representing patrol times, or null
+     * @param sparseMatrix the sparse matrix representing patrol times, or null if the matrix is dense
+     * @return the hash of the instance
+     */
+    public static long instanceHash(int[][] matrix, SparseMatrix sparseMatrix) {
+        int n = sparseMatrix != null ? sparseMatrix.getN() : matrix.length;
+        int m = sparseMatrix != null ? sparseMatrix.getM() : matrix[0].length;
+        // FNV-1a over the times, patrol by patrol, scrambled at the end
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ n) * 0x100000001b3L;
+        hash = (hash ^ m) * 0x100000001b3L;
+        for (int patrol = 0; patrol < n; patrol++) {
+            for (int system = 0; system < m; system++) {
+                int time = sparseMatrix != null ? sparseMatrix.get(patrol, system) : matrix[patrol][system];
+                hash = (hash ^ (time & 0xffffffffL)) * 0x100000001b3L;
+            }
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * This method reads the best archived distributions of an instance.
+     *
+     * @param hash the hash of the instance
+     * @param n the number of patrols of the instance
+     * @param m the number of systems of the instance
+     * @return the patrol of every system of each distribution, the best first, at most SIZE of them
+     */
+    public List<int[]> load(long hash, int n, int m) {
+        List<int[]> distributions = new ArrayList<>();
+        if (!logFile.exists()) {
+            return distributions;
+        }
+        synchronized (LOCK) {
+            try (RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+                 RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+                FileLock lock = log.getChannel().lock();
+                try {
+                    catchUp(log, index);
+                    for (long[] entry : bestEntries(readIndex(hash), SIZE)) {
+                        int[] patrolOfSystem = readRecord(log, entry[0], hash, n, m);
+                        if (patrolOfSystem != null) {
+                            distributions.add(patrolOfSystem);
+                        }
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading the archive: " + e.getMessage());
+            }
+        }
+        return distributions;
+    }
+
+    /**
+     * This method appends the distributions that are new to the archive and among the best of their instance.
+     *
+     * @param hash the hash of the instance the distributions were evaluated on
+     * @param individuals the individuals to archive
+     * @return the number of distributions appended
+     */
+    public int store(long hash, List<Individual> individuals) {
+        if (individuals.isEmpty()) {
+            return 0;
+        }
+        int stored = 0;
+        synchronized (LOCK) {
+            try (RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+                 RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+                FileLock lock = log.getChannel().lock();
+                try {
+                    catchUp(log, index);
+
+                    List<long[]> entries = readIndex(hash);
+                    Set<Long> fingerprints = new HashSet<>();
+                    for (long[] entry : entries) {
+                        fingerprints.add(entry[2]);
+                    }
+                    List<long[]> best = bestEntries(entries, SIZE);
+
+                    for (Individual individual : individuals) {
+                        List<List<Integer>> distribution = individual.getDistribution();
+                        long fingerprint = FitnessCache.fingerprint(distribution);
+                        float patrolTime = individual.getOptimalPatrolTime();
+                        if (fingerprints.contains(fingerprint)
+                                || (best.size() >= SIZE && patrolTime >= Float.intBitsToFloat((int) best.get(SIZE - 1)[1]))) {
+                            continue;
+                        }
+
+                        int[] patrolOfSystem = new int[individual.getNumSystems()];
+                        individual.fillPatrolOfSystem(patrolOfSystem);
+                        long offset = log.length();
+                        log.seek(offset);
+                        log.write(encodeRecord(hash, individual.getNumPatrols(), patrolTime, patrolOfSystem));
+                        index.seek(index.length());
+                        writeIndexEntry(index, hash, offset, patrolTime, fingerprint);
+
+                        long[] entry = { offset, Float.floatToIntBits(patrolTime), fingerprint };
+                        fingerprints.add(fingerprint);
+                        best.add(entry);
+                        best = bestEntries(best, SIZE);
+                        stored++;
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing the archive: " + e.getMessage());
+            }
+        }
+        return stored;
+    }
+
+    // Indexes the records the index is missing and drops a torn record at the end of the log
+    private void catchUp(RandomAccessFile log, RandomAccessFile index) throws IOException {
+        long indexed = 0;
+        long entries = index.length() / INDEX_ENTRY_BYTES;
+        index.setLength(entries * INDEX_ENTRY_BYTES);
+        if (entries > 0) {
+            index.seek((entries - 1) * INDEX_ENTRY_BYTES + 8);
+            Solution last = readSolution(log, index.readLong());
+            if (last == null) {
+                // The index does not match the log, which is indexed again from the start
+                index.setLength(0);
+            } else {
+                index.seek((entries - 1) * INDEX_ENTRY_BYTES + 8);
+                indexed = index.readLong() + recordBytes(last.payloadBytes);
+            }
+        }
+
+        long offset = indexed;
+        while (offset < log.length()) {
+            Solution solution = readSolution(log, offset);
+            if (solution == null) {
+                log.setLength(offset);
+                break;
+            }
+            index.seek(index.length());
+            writeIndexEntry(index, solution.hash, offset, solution.patrolTime, fingerprint(solution.patrolOfSystem, solution.n));
+            offset += recordBytes(solution.payloadBytes);
+        }
+    }
+
+    // Index entries of an instance: offset, bits of the patrol time and fingerprint
+    private List<long[]> readIndex(long hash) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        if (!indexFile.exists()) {
+            return entries;
+        }
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+            long count = index.length() / INDEX_ENTRY_BYTES;
+            byte[] bytes = new byte[(int) Math.min(count * INDEX_ENTRY_BYTES, Integer.MAX_VALUE)];
+            index.readFully(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            for (long i = 0; i < count; i++) {
+                long entryHash = in.readLong();
+                long offset = in.readLong();
+                float patrolTime = in.readFloat();
+                long fingerprint = in.readLong();
+                if (entryHash == hash) {
+                    entries.add(new long[] { offset, Float.floatToIntBits(patrolTime), fingerprint });
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static List<long[]> bestEntries(List<long[]> entries, int count) {
+        List<long[]> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Float.compare(Float.intBitsToFloat((int) a[1]), Float.intBitsToFloat((int) b[1])));
+        return new ArrayList<>(sorted.subList(0, Math.min(count, sorted.size())));
+    }
+
+    private static void writeIndexEntry(RandomAccessFile index, long hash, long offset, float patrolTime, long fingerprint) throws IOException {
+        index.writeLong(hash);
+        index.writeLong(offset);
+        index.writeFloat(patrolTime);
+        index.writeLong(fingerprint);
+    }
+
+    private static byte[] encodeRecord(long hash, int n, float patrolTime, int[] patrolOfSystem) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeLong(hash);
+        payload.writeInt(n);
+        payload.writeInt(patrolOfSystem.length);
+        payload.writeFloat(patrolTime);
+        int width = patrolWidth(n);
+        for (int patrol : patrolOfSystem) {
+            if (width == 1) {
+                payload.writeByte(patrol);
+            } else if (width == 2) {
+                payload.writeShort(patrol);
+            } else {
+                payload.writeInt(patrol);
+            }
+        }
+        byte[] body = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(body.length + 12);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(RECORD_MAGIC);
+        record.writeInt(body.length);
+        record.write(body);
+        record.writeInt((int) crc.getValue());
+        return recordBytes.toByteArray();
+    }
+
+    // A record is a header, the payload and its CRC; null if it is torn or corrupted
+    private static Solution readSolution(RandomAccessFile log, long offset) throws IOException {
+        try {
+            log.seek(offset);
+            if (log.readInt() != RECORD_MAGIC) {
+                return null;
+            }
+            int length = log.readInt();
+            if (length < 20 || offset + recordBytes(length) > log.length()) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            log.readFully(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (log.readInt() != (int) crc.getValue()) {
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            Solution solution = new Solution();
+            solution.payloadBytes = length;
+            solution.hash = in.readLong();
+            solution.n = in.readInt();
+            int m = in.readInt();
+            solution.patrolTime = in.readFloat();
+            int width = patrolWidth(solution.n);
+            if (solution.n <= 0 || m <= 0 || length != 20 + (long) m * width) {
+                return null;
+            }
+            solution.patrolOfSystem = new int[m];
+            for (int system = 0; system < m; system++) {
+                solution.patrolOfSystem[system] = width == 1 ? in.readUnsignedByte() : width == 2 ? in.readUnsignedShort() : in.readInt();
+                if (solution.patrolOfSystem[system] < 0 || solution.patrolOfSystem[system] >= solution.n) {
+                    return null;
+                }
+            }
+            return solution;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int[] readRecord(RandomAccessFile log, long offset, long hash, int n, int m) throws IOException {
+        Solution solution = readSolution(log, offset);
+        if (solution == null || solution.hash != hash || solution.n != n || solution.patrolOfSystem.length != m) {
+            return null;
+        }
+        return solution.patrolOfSystem;
+    }
+
+    private static long recordBytes(int payloadBytes) {
+        return 12L + payloadBytes;
+    }
+
+    private static int patrolWidth(int n) {
+        return n <= 256 ? 1 : n <= 65536 ? 2 : 4;
+    }
+
+    // The fingerprint of FitnessCache.fingerprint, from the patrol of every system
+    private static long fingerprint(int[] patrolOfSystem, int n) {
+        List<List<Integer>> distribution = new ArrayList<>(n);
+        for (int patrol = 0; patrol < n; patrol++) {
+            distribution.add(new ArrayList<>());
+        }
+        for (int system = 0; system < patrolOfSystem.length; system++) {
+            distribution.get(patrolOfSystem[system]).add(system);
+        }
+        return FitnessCache.fingerprint(distribution);
+    }
+
+    private static class Solution {
+        private long hash;
+        private int n;
+        private float patrolTime;
+        private int[] patrolOfSystem;
+        private int payloadBytes;
+    }
+}
@@ -0,0 +1,171 @@
+package StochasticSimulation;
+
+import StochasticSimulation.Events.*;
+
+import java.util.List;
+import java.util.Random;
+
+import Parser.SimulationParameters;
+
+/**
+ * This class represents an approximate simulation that executes events in leaps.
+ *
+ * In the sequential simulation, the next event is the one whose time, computed from the best
+ * individual, is the shortest, and the best individual may change after every event. The
+ * TauLeapingSimulation class freezes the best individual for a whole leap. The winning event then
+ * fires a known number of times, as many as fit in the leap, and they run as one batch. Children
+ * are merged into the population, and the top distributions updated, once per leap. Epidemics and
+ * restarts are checked once per leap. Leaps never cross an observation, so observations are still
+ * reported at the same instants. When the next event crosses an observation, a single event is
+ * executed exactly as in the sequential simulation.
+ *
+ * The leap size, in events, is adapted after every leap. It is halved when the comfort of the best
+ * individual moved by more than the tolerance, since the frozen event times were then too far off.
+ * It is doubled when the comfort moved by less than half the tolerance. It never exceeds the
+ * tolerance times the population size, so that deaths cannot empty the population in one leap.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class TauLeapingSimulation extends Simulation {
+    /**
+     * Number of observations made by every run of the simulation.
+     */
+    private static final int OBSERVATIONS = 20;
+    /**
+     * Largest number of events in a single leap.
+     */
+    private static final int MAX_LEAP = 4096;
+
+    private float epsilon;
+    private int leapCount;
+
+    /**
+     * Constructor for TauLeapingSimulation.
+     *
+     * @param params the parameters of the simulation, including the tolerance of the leaps
+     * @param random the Random object used by the events
+     * @param improved whether restarts are enabled
+     */
+    public TauLeapingSimulation(SimulationParameters params, Random random, boolean improved) {
+        super(params, random, improved);
+        this.epsilon = params.getTauLeapEpsilon();
+    }
+
+    /**
+     * This method returns the number of leaps made by the last run, batches and single events alike.
+     *
+     * @return the number of leaps
+     */
+    public int getLeapCount() {
+        return leapCount;
+    }
+
+    @Override
+    public void run() {
+        startBudget();
+        float currentTime = 0;
+        eventCount = 0;
+        epidemicCount = 0;
+        leapCount = 0;
+        bestEverTime = 0;
+        Individual bestEver = population.getBestEverIndividual();
+        float observationInterval = tau / OBSERVATIONS;
+        float nextObservationTime = observationInterval;
+        int observationCount = 0;
+        int leap = 1;
+
+        List<EvolutionEvent> events = createRegularEvents();
+        EpidemicEvent epidemicEvent = new EpidemicEvent(population.getMaxPopulationSize());
+        RestartEvent restartEvent = createRestartEvent();
+
+        while (currentTime < tau && population.getPopulationSize() > 0 && !stopRequested) {
+            Individual bestIndividual = population.getBestIndividual();
+            float bestComfort = bestIndividual.getComfortLevel();
+
+            if (bestComfort == 1.0f) {
+                observationCount++;
+                notifyObservers(observationCount, currentTime, eventCount, epidemicCount);
+                return;
+            }
+
+            EvolutionEvent nextEvent = null;
+            float eventTime = Float.MAX_VALUE;
+            for (EvolutionEvent event : events) {
+                float time = event.getNextEventTime(bestIndividual);
+                if (time < eventTime) {
+                    eventTime = time;
+                    nextEvent = event;
+                }
+            }
+            if (nextEvent == null) break;
+
+            // Number of events that fit before the next observation with the best individual frozen
+            int fitting = (int) Math.min(MAX_LEAP, (Math.min(nextObservationTime, tau) - currentTime) / eventTime);
+            int batchSize = Math.min(fitting, Math.min(leap, Math.max(1, (int) (epsilon * population.getPopulationSize()))));
+            batchSize = (int) Math.min(batchSize, getRemainingEvents());
+
+            if (batchSize == 0) {
+                // The next event crosses an observation: it runs alone, as in the sequential simulation
+                float nextEventTime = eventTime;
+                while (currentTime + nextEventTime > nextObservationTime && currentTime < tau) {
+                    float timeToNextObservation = nextObservationTime - currentTime;
+                    currentTime = nextObservationTime;
+                    observationCount++;
+                    notifyObservers(observationCount, currentTime, eventCount, epidemicCount);
+                    nextObservationTime += observationInterval;
+                    nextEventTime -= timeToNextObservation;
+                }
+                currentTime += nextEventTime;
+                if (currentTime >= tau) {
+                    eventCount++;
+                    break;
+                }
+                batchSize = 1;
+            } else {
+                currentTime += batchSize * eventTime;
+            }
+
+            applyDueCostUpdates(currentTime);
+            population.beginBatch();
+            for (int i = 0; i < batchSize; i++) {
+                execute(nextEvent);
+            }
+            population.endBatch();
+            eventCount += batchSize;
+            leapCount++;
+
+            if (population.getBestEverIndividual() != bestEver) {
+                bestEver = population.getBestEverIndividual();
+                bestEverTime = currentTime;
+            }
+
+            // Error control: the drift of the best comfort measures how stale the frozen event times became
+            if (population.getPopulationSize() > 0) {
+                float drift = Math.abs(population.getBestIndividual().getComfortLevel() - bestComfort) / bestComfort;
+                if (drift > epsilon) {
+                    leap = Math.max(1, leap / 2);
+                } else if (drift < epsilon / 2) {
+                    leap = Math.min(MAX_LEAP, leap * 2);
+                }
+            }
+
+            if (population.getPopulationSize() > vMax) {
+                execute(epidemicEvent);
+                epidemicCount++;
+            }
+
+            if (improved) {
+                checkRestart(restartEvent, batchSize);
+            }
+
+            // A leap is long enough for the clock to be read after every one
+            checkBudget(eventCount, true);
+        }
+
+        if (currentTime < tau && population.getPopulationSize() > 0) {
+            observationCount++;
+            notifyObservers(observationCount, stopRequested ? currentTime : tau, eventCount, epidemicCount);
+        }
+    }
+}
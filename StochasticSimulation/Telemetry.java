@@ -0,0 +1,246 @@
+package StochasticSimulation;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents an opt-in measure of where the simulation spends its CPU time and allocates memory.
+ *
+ * The Telemetry class reads the CPU time and the allocated bytes of the simulation thread through
+ * com.sun.management.ThreadMXBean when a scope begins and ends, and adds the difference to the
+ * counter of the scope: the execution of an event, of a kind of event, an observer callback or the
+ * rescan of the top distributions. Scopes nest, and every counter only keeps what its scope spent
+ * itself, so that the rescan of the top distributions done while a child is added is charged to the
+ * rescan and not to the reproduction. What the simulation loop spends outside every scope is
+ * reported as such.
+ *
+ * Only the simulation thread is measured: the children built on the common ForkJoin pool by
+ * --offspring are charged to their event only for the part the simulation thread runs itself.
+ * The breakdown can be printed at any time, from any thread, including through the printBreakdown
+ * operation of the MBean StochasticSimulation:type=Telemetry, from JConsole or any JMX client.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class Telemetry implements TelemetryMXBean {
+    /**
+     * Deepest nesting of scopes measured; deeper scopes are charged to the enclosing one.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * The calls, CPU time and allocated bytes of a scope.
+     */
+    public static class Counter {
+        private String name;
+        private long calls;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private com.sun.management.ThreadMXBean threads;
+    private long threadId;
+    private long startCpu;
+    private long startBytes;
+    private Map<String, Counter> counters;
+    private Map<Object, Counter> countersBySource;
+    private Counter[] open;
+    private long[] openCpu;
+    private long[] openBytes;
+    private long[] nestedCpu;
+    private long[] nestedBytes;
+    private int depth;
+
+    private Telemetry(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+        this.counters = new LinkedHashMap<>();
+        this.countersBySource = new IdentityHashMap<>();
+        this.open = new Counter[MAX_DEPTH];
+        this.openCpu = new long[MAX_DEPTH];
+        this.openBytes = new long[MAX_DEPTH];
+        this.nestedCpu = new long[MAX_DEPTH];
+        this.nestedBytes = new long[MAX_DEPTH];
+        start();
+    }
+
+    /**
+     * This method creates the telemetry of the current thread.
+     *
+     * @return the telemetry, or null if the JVM cannot measure the CPU time and allocations of a thread
+     */
+    public static Telemetry create() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("This JVM cannot measure the allocations of a thread; telemetry is off.");
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM cannot measure the CPU time and allocations of a thread; telemetry is off.");
+            return null;
+        }
+        threads.setThreadCpuTimeEnabled(true);
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return new Telemetry(threads);
+    }
+
+    /**
+     * This method makes the current thread the measured one and starts the totals of the run from now.
+     */
+    public void start() {
+        threadId = Thread.currentThread().getId();
+        startCpu = threads.getCurrentThreadCpuTime();
+        startBytes = threads.getCurrentThreadAllocatedBytes();
+        depth = 0;
+    }
+
+    /**
+     * This method returns the counter with the given name, creating it the first time.
+     *
+     * @param name the name of the scope
+     * @return the counter of the scope
+     */
+    public synchronized Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * This method returns the counter of an object, an event or an observer, named the first time it is seen.
+     *
+     * @param source the object whose executions are measured
+     * @param name the name of its scope, used the first time only
+     * @return the counter of the object
+     */
+    public Counter counter(Object source, String name) {
+        Counter counter = countersBySource.get(source);
+        if (counter == null) {
+            counter = counter(name);
+            countersBySource.put(source, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * This method opens a scope on the current thread.
+     *
+     * @param counter the counter of the scope
+     */
+    public void begin(Counter counter) {
+        if (depth < MAX_DEPTH) {
+            open[depth] = counter;
+            nestedCpu[depth] = 0;
+            nestedBytes[depth] = 0;
+            openBytes[depth] = threads.getCurrentThreadAllocatedBytes();
+            openCpu[depth] = threads.getCurrentThreadCpuTime();
+        }
+        depth++;
+    }
+
+    /**
+     * This method closes the innermost scope and charges its counter with what it spent outside nested scopes.
+     */
+    public void end() {
+        depth--;
+        if (depth >= MAX_DEPTH) {
+            return;
+        }
+        long cpu = threads.getCurrentThreadCpuTime() - openCpu[depth];
+        long bytes = threads.getCurrentThreadAllocatedBytes() - openBytes[depth];
+        Counter counter = open[depth];
+        counter.calls++;
+        counter.cpuNanos += cpu - nestedCpu[depth];
+        counter.allocatedBytes += bytes - nestedBytes[depth];
+        if (depth > 0) {
+            nestedCpu[depth - 1] += cpu;
+            nestedBytes[depth - 1] += bytes;
+        }
+    }
+
+    /**
+     * This method registers the telemetry in the platform MBean server, so that its breakdown can be printed on demand.
+     *
+     * @return true if the MBean is registered, false otherwise
+     */
+    public boolean registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("StochasticSimulation:type=Telemetry"));
+            return true;
+        } catch (JMException e) {
+            System.out.println("The telemetry MBean cannot be registered; telemetry is only printed at the end of the run.");
+            return false;
+        }
+    }
+
+    @Override
+    public void printBreakdown() {
+        print(System.out);
+    }
+
+    public synchronized List<Counter> getCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    /**
+     * This method prints the breakdown of the run so far, the scopes that allocated the most first,
+     * followed by what the simulation loop spent outside every scope.
+     *
+     * @param out the stream the breakdown is printed to
+     */
+    public void print(PrintStream out) {
+        long totalCpu = Math.max(0, threads.getThreadCpuTime(threadId) - startCpu);
+        long totalBytes = Math.max(0, threads.getThreadAllocatedBytes(threadId) - startBytes);
+
+        List<Counter> sorted = getCounters();
+        sorted.sort((a, b) -> Long.compare(b.allocatedBytes, a.allocatedBytes));
+        long scopedCpu = 0;
+        long scopedBytes = 0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Telemetry (simulation thread, nested scopes excluded):\n");
+        sb.append(String.format("%-44s %10s %10s %12s %10s %7s%n", "scope", "calls", "CPU ms", "allocated MB", "B/call", "alloc%"));
+        for (Counter counter : sorted) {
+            scopedCpu += counter.cpuNanos;
+            scopedBytes += counter.allocatedBytes;
+            appendRow(sb, counter.name, counter.calls, counter.cpuNanos, counter.allocatedBytes, totalBytes);
+        }
+        appendRow(sb, "(simulation loop)", 0, Math.max(0, totalCpu - scopedCpu), Math.max(0, totalBytes - scopedBytes), totalBytes);
+        appendRow(sb, "(total)", 0, totalCpu, totalBytes, totalBytes);
+        out.print(sb);
+        out.flush();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, long calls, long cpuNanos, long bytes, long totalBytes) {
+        sb.append(String.format("%-44s %10s %10.1f %12.2f %10s %6.1f%%%n", name,
+                calls > 0 ? Long.toString(calls) : "-",
+                cpuNanos / 1e6,
+                bytes / (1024.0 * 1024.0),
+                calls > 0 ? Long.toString(bytes / calls) : "-",
+                totalBytes > 0 ? 100.0 * bytes / totalBytes : 0));
+    }
+}
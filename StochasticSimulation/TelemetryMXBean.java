@@ -0,0 +1,14 @@
+package StochasticSimulation;
+
+/**
+ * This interface represents the operations of the telemetry exposed through JMX.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public interface TelemetryMXBean {
+    /**
+     * This method prints the breakdown of the run so far to the standard output.
+     */
+    void printBreakdown();
+}
@@ -0,0 +1,75 @@
+#!/bin/sh
+#
+# Builds the simulation jar and a fast-start variant of it.
+#
+#   ./package.sh            compiles, packages build/poo.jar and dumps an AppCDS
+#                           archive (build/poo.jsa) from a training run over SIM/
+#   ./package.sh native     additionally compiles a GraalVM native image (build/poo)
+#   ./package.sh vector     additionally compiles the source root vector/, the evaluator of
+#                           blocks of individuals built on the incubating Vector API
+#
+# The arguments can be combined, e.g. ./package.sh vector native.
+#
+# Run the archived jar with:
+#   java -XX:SharedArchiveFile=build/poo.jsa -jar build/poo.jar -f <input file>
+#
+# With a jar built by ./package.sh vector, add --add-modules jdk.incubator.vector to the java
+# command to evaluate the blocks of --batch-eval with the Vector API
+# (see StochasticSimulation.VectorBatchEvaluator).
+#
+# @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+set -e
+
+cd "$(dirname "$0")"
+
+BUILD=build
+CLASSES=$BUILD/classes
+JAR=$BUILD/poo.jar
+CLASS_LIST=$BUILD/poo.classlist
+ARCHIVE=$BUILD/poo.jsa
+
+NATIVE=false
+VECTOR=false
+for arg in "$@"; do
+    case "$arg" in
+        native) NATIVE=true ;;
+        vector) VECTOR=true ;;
+        *) echo "Unknown argument: $arg"; exit 1 ;;
+    esac
+done
+
+rm -rf "$BUILD"
+mkdir -p "$CLASSES"
+
+# Compile and package
+javac -encoding UTF-8 -d "$CLASSES" $(find MainPackage Parser StochasticSimulation Harness -name '*.java')
+if [ "$VECTOR" = true ]; then
+    # Only this source root links against the incubator module
+    javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp "$CLASSES" -d "$CLASSES" $(find vector -name '*.java')
+fi
+cp -r META-INF "$CLASSES"
+jar --create --file "$JAR" --manifest META-INF/MANIFEST.MF -C "$CLASSES" .
+
+# Training run: record every class loaded while solving each instance of the corpus
+: > "$CLASS_LIST"
+for input in SIM/*.txt; do
+    case "$input" in
+        *_results.txt) continue ;;
+    esac
+    echo "Training on $input"
+    java -Xshare:off -XX:DumpLoadedClassList="$BUILD/run.classlist" -jar "$JAR" -f "$input" > /dev/null
+    cat "$BUILD/run.classlist" >> "$CLASS_LIST"
+done
+rm -f "$BUILD/run.classlist"
+sort -u "$CLASS_LIST" -o "$CLASS_LIST"
+
+# Dump the static AppCDS archive from the merged class list
+java -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR"
+
+echo "Archive written to $ARCHIVE"
+
+if [ "$NATIVE" = true ]; then
+    # The configuration under META-INF/native-image is picked up from the jar
+    native-image -jar "$JAR" -o "$BUILD/poo"
+    echo "Native image written to $BUILD/poo"
+fi
@@ -0,0 +1,74 @@
+package StochasticSimulation;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class represents an evaluator of blocks of individuals using the Vector API.
+ *
+ * The VectorBatchEvaluator class processes as many individuals at once as an int vector
+ * has lanes: for every system, it gathers the times of the patrols the lanes assign it to,
+ * gathers the current loads of those patrols, adds and scatters them back. Lanes never
+ * collide because each one owns its own column of loads. The maximum over the patrols is
+ * then a lane-wise vector max. Leftover individuals are evaluated with the scalar code.
+ *
+ * It lives in the separate source root vector/, compiled only by ./package.sh vector with
+ * --add-modules jdk.incubator.vector, so that the rest of the tree builds with a plain javac.
+ * BatchEvaluator.forMatrix loads it by name when the module is present and falls back to the
+ * scalar evaluator when the class was not compiled.
+ *
+ * @version 1.0
+ * @author António Jotta, David Martinho, Miguel Silva, Miguel Yin
+ */
+public class VectorBatchEvaluator extends BatchEvaluator {
+    /**
+     * The preferred species, capped at 256 bits: the C2 compiler of JDK 17 crashes on 512-bit
+     * int gathers and scatters, and the wider vectors gave no speed-up on this loop anyway.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() > IntVector.SPECIES_256.length()
+            ? IntVector.SPECIES_256 : IntVector.SPECIES_PREFERRED;
+
+    private int[] timeIndex;
+    private int[] loadIndex;
+
+    /**
+     * Constructor for VectorBatchEvaluator.
+     *
+     * @param matrix the dense matrix representing patrol times
+     */
+    public VectorBatchEvaluator(int[][] matrix) {
+        super(matrix);
+        this.timeIndex = new int[SPECIES.length()];
+        this.loadIndex = new int[SPECIES.length()];
+    }
+
+    @Override
+    protected void computeMaxTimes(int[] assignments, int[] loads, int[] maxTimes, int tileSize) {
+        if (tileSize % SPECIES.length() != 0) {
+            super.computeMaxTimes(assignments, loads, maxTimes, tileSize);
+            return;
+        }
+
+        int lanes = SPECIES.length();
+        IntVector laneOffsets = IntVector.zero(SPECIES).addIndex(1);
+
+        for (int first = 0; first < tileSize; first += lanes) {
+            IntVector columns = laneOffsets.add(first);
+            for (int system = 0; system < numSystems; system++) {
+                IntVector patrols = IntVector.fromArray(SPECIES, assignments, system * tileSize + first);
+                patrols.add(system * numPatrols).intoArray(timeIndex, 0);
+                patrols.mul(tileSize).add(columns).intoArray(loadIndex, 0);
+                IntVector time = IntVector.fromArray(SPECIES, times, 0, timeIndex, 0);
+                IntVector load = IntVector.fromArray(SPECIES, loads, 0, loadIndex, 0);
+                load.add(time).intoArray(loads, 0, loadIndex, 0);
+            }
+
+            IntVector max = IntVector.zero(SPECIES);
+            for (int patrol = 0; patrol < numPatrols; patrol++) {
+                max = max.lanewise(VectorOperators.MAX, IntVector.fromArray(SPECIES, loads, patrol * tileSize + first));
+            }
+            max.intoArray(maxTimes, first);
+        }
+    }
+}